@@ -13,6 +13,8 @@ import static org.openhab.binding.homematic.internal.misc.HomematicConstants.*;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -58,6 +60,7 @@ import org.slf4j.LoggerFactory;
  */
 public class HomematicThingHandler extends BaseThingHandler {
     private Logger logger = LoggerFactory.getLogger(HomematicThingHandler.class);
+    private volatile Map<String, TypeConverter<?>> convertersByChannelId = Collections.emptyMap();
 
     public HomematicThingHandler(Thing thing) {
         super(thing);
@@ -73,6 +76,7 @@ public class HomematicThingHandler extends BaseThingHandler {
                     HomematicGateway gateway = getHomematicGateway();
                     HmDevice device = gateway.getDevice(UidUtils.getHomematicAddress(getThing()));
                     HmChannel channelZero = device.getChannel(0);
+                    initializeConverters();
                     loadHomematicChannelValues(channelZero);
                     updateStatus(device);
                     logger.debug("Initializing thing '{}' from gateway '{}'", getThing().getUID(), gateway.getId());
@@ -111,6 +115,30 @@ public class HomematicThingHandler extends BaseThingHandler {
         });
     }
 
+    /**
+     * Resolves the converter of each channel once, so state updates and commands don't need to look it up again.
+     */
+    private void initializeConverters() {
+        Map<String, TypeConverter<?>> converters = new HashMap<String, TypeConverter<?>>();
+        for (Channel channel : getThing().getChannels()) {
+            try {
+                converters.put(channel.getUID().getId(),
+                        ConverterFactory.createConverter(channel.getAcceptedItemType()));
+            } catch (ConverterException ex) {
+                logger.debug("{}", ex.getMessage());
+            }
+        }
+        convertersByChannelId = Collections.unmodifiableMap(converters);
+    }
+
+    /**
+     * Returns the converter of the channel.
+     */
+    private TypeConverter<?> getConverter(Channel channel) throws ConverterException {
+        TypeConverter<?> converter = convertersByChannelId.get(channel.getUID().getId());
+        return converter != null ? converter : ConverterFactory.createConverter(channel.getAcceptedItemType());
+    }
+
     /**
      * Sets a thing property with a datapoint value.
      */
@@ -169,7 +197,7 @@ public class HomematicThingHandler extends BaseThingHandler {
                         handleCommand(stopChannelUID, OnOffType.ON);
                     } else {
                         dp = gateway.getDatapoint(dpInfo);
-                        TypeConverter<?> converter = ConverterFactory.createConverter(channel.getAcceptedItemType());
+                        TypeConverter<?> converter = getConverter(channel);
                         Object newValue = converter.convertToBinding(command, dp);
                         HmDatapointConfig config = getChannelConfig(channel, dp);
                         gateway.sendDatapoint(dp, config, newValue);
@@ -244,7 +272,7 @@ public class HomematicThingHandler extends BaseThingHandler {
         if (isLinked(channel)) {
             loadHomematicChannelValues(dp.getChannel());
 
-            TypeConverter<?> converter = ConverterFactory.createConverter(channel.getAcceptedItemType());
+            TypeConverter<?> converter = getConverter(channel);
             State state = converter.convertFromBinding(dp);
             updateState(channel.getUID(), state);
         }
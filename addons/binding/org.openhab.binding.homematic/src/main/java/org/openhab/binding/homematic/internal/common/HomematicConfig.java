@@ -45,9 +45,14 @@ public class HomematicConfig {
     private String callbackHost;
     private int xmlCallbackPort;
     private int binCallbackPort;
+    private boolean nioCallbackServer;
 
     private int socketMaxAlive = 900;
     private int timeout = 15;
+    private int multicallWindow;
+    private int variablesPollInterval;
+    private int hotVariablesPollInterval;
+    private String hotVariables;
 
     private HmGatewayInfo gatewayInfo;
 
@@ -117,6 +122,20 @@ public class HomematicConfig {
         this.binCallbackPort = binCallbackPort;
     }
 
+    /**
+     * Returns true, if the non-blocking BIN-RPC callback server should be used.
+     */
+    public boolean isNioCallbackServer() {
+        return nioCallbackServer;
+    }
+
+    /**
+     * Sets the flag to use the non-blocking BIN-RPC callback server.
+     */
+    public void setNioCallbackServer(boolean nioCallbackServer) {
+        this.nioCallbackServer = nioCallbackServer;
+    }
+
     /**
      * Returns the HmGatewayInfo.
      */
@@ -159,6 +178,63 @@ public class HomematicConfig {
         this.timeout = timeout;
     }
 
+    /**
+     * Returns the window in milliseconds in which setValue calls are collected and sent with one multicall, 0 disables
+     * the batching.
+     */
+    public int getMulticallWindow() {
+        return multicallWindow;
+    }
+
+    /**
+     * Sets the window in milliseconds in which setValue calls are collected and sent with one multicall.
+     */
+    public void setMulticallWindow(int multicallWindow) {
+        this.multicallWindow = multicallWindow;
+    }
+
+    /**
+     * Returns the interval in seconds for polling the values of all CCU variables, 0 disables the polling.
+     */
+    public int getVariablesPollInterval() {
+        return variablesPollInterval;
+    }
+
+    /**
+     * Sets the interval in seconds for polling the values of all CCU variables.
+     */
+    public void setVariablesPollInterval(int variablesPollInterval) {
+        this.variablesPollInterval = variablesPollInterval;
+    }
+
+    /**
+     * Returns the interval in seconds for polling the values of the hot CCU variables, 0 disables the polling.
+     */
+    public int getHotVariablesPollInterval() {
+        return hotVariablesPollInterval;
+    }
+
+    /**
+     * Sets the interval in seconds for polling the values of the hot CCU variables.
+     */
+    public void setHotVariablesPollInterval(int hotVariablesPollInterval) {
+        this.hotVariablesPollInterval = hotVariablesPollInterval;
+    }
+
+    /**
+     * Returns the comma separated names of the CCU variables which are polled with the hot interval.
+     */
+    public String getHotVariables() {
+        return hotVariables;
+    }
+
+    /**
+     * Sets the comma separated names of the CCU variables which are polled with the hot interval.
+     */
+    public void setHotVariables(String hotVariables) {
+        this.hotVariables = hotVariables;
+    }
+
     /**
      * Returns the HmGatewayType.
      */
@@ -297,9 +373,12 @@ public class HomematicConfig {
         ToStringBuilder tsb = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
         tsb.append("gatewayAddress", gatewayAddress).append("callbackHost", callbackHost)
                 .append("xmlCallbackPort", xmlCallbackPort).append("binCallbackPort", binCallbackPort)
+                .append("nioCallbackServer", nioCallbackServer)
                 .append("gatewayType", gatewayType).append("rfPort", getRfPort()).append("wiredPort", getWiredPort())
                 .append("hmIpPort", getHmIpPort()).append("cuxdPort", getCuxdPort()).append("groupPort", getGroupPort())
-                .append("timeout", timeout).append("socketMaxAlive", socketMaxAlive);
+                .append("timeout", timeout).append("socketMaxAlive", socketMaxAlive)
+                .append("multicallWindow", multicallWindow).append("variablesPollInterval", variablesPollInterval)
+                .append("hotVariablesPollInterval", hotVariablesPollInterval).append("hotVariables", hotVariables);
         return tsb.toString();
     }
 }
@@ -15,12 +15,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +35,8 @@ import org.openhab.binding.homematic.internal.communicator.client.RpcClient;
 import org.openhab.binding.homematic.internal.communicator.client.TransferMode;
 import org.openhab.binding.homematic.internal.communicator.client.UnknownParameterSetException;
 import org.openhab.binding.homematic.internal.communicator.client.XmlRpcClient;
+import org.openhab.binding.homematic.internal.communicator.parser.GetParamsetDescriptionParser;
+import org.openhab.binding.homematic.internal.communicator.server.BinRpcNioServer;
 import org.openhab.binding.homematic.internal.communicator.server.BinRpcServer;
 import org.openhab.binding.homematic.internal.communicator.server.RpcEventListener;
 import org.openhab.binding.homematic.internal.communicator.server.RpcServer;
@@ -57,6 +61,7 @@ import org.openhab.binding.homematic.internal.communicator.virtual.VirtualDatapo
 import org.openhab.binding.homematic.internal.communicator.virtual.VirtualGateway;
 import org.openhab.binding.homematic.internal.misc.DelayedExecuter;
 import org.openhab.binding.homematic.internal.misc.DelayedExecuter.DelayedExecuterCallback;
+import org.openhab.binding.homematic.internal.misc.EventCoalescer;
 import org.openhab.binding.homematic.internal.misc.HomematicClientException;
 import org.openhab.binding.homematic.internal.misc.MiscUtils;
 import org.openhab.binding.homematic.internal.model.HmChannel;
@@ -81,7 +86,8 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private final Logger logger = LoggerFactory.getLogger(AbstractHomematicGateway.class);
     public static final double DEFAULT_DISABLE_DELAY = 2.0;
     private static final long CONNECTION_TRACKER_INTERVAL_SECONDS = 15;
-    private static final String GATEWAY_POOL_NAME = "homematicGateway";
+    protected static final String GATEWAY_POOL_NAME = "homematicGateway";
+    private static final String METADATA_POOL_NAME = "homematicMetadata";
 
     private Map<TransferMode, RpcClient<?>> rpcClients = new HashMap<TransferMode, RpcClient<?>>();
     private Map<TransferMode, RpcServer> rpcServers = new HashMap<TransferMode, RpcServer>();
@@ -91,13 +97,16 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private HomematicGatewayAdapter gatewayAdapter;
     private DelayedExecuter sendDelayedExecutor = new DelayedExecuter();
     private DelayedExecuter receiveDelayedExecutor = new DelayedExecuter();
-    private Set<HmDatapointInfo> echoEvents = Collections.synchronizedSet(new HashSet<HmDatapointInfo>());
+    private Set<HmDatapointInfo> echoEvents = ConcurrentHashMap.newKeySet();
+    private EventCoalescer eventCoalescer = new EventCoalescer();
     private ScheduledFuture<?> connectionTrackerFuture;
     private ConnectionTrackerThread connectionTrackerThread;
-    private Map<String, HmDevice> devices = Collections.synchronizedMap(new HashMap<String, HmDevice>());
+    private Map<String, HmDevice> devices = new ConcurrentHashMap<String, HmDevice>();
     private Map<HmInterface, TransferMode> availableInterfaces = new TreeMap<HmInterface, TransferMode>();
     private static List<VirtualDatapointHandler> virtualDatapointHandlers = new ArrayList<VirtualDatapointHandler>();
-    private boolean cancelLoadAllMetadata;
+    private ParamsetDescriptionCache paramsetDescriptionCache;
+    private final Object deviceLoadLock = new Object();
+    private volatile boolean cancelLoadAllMetadata;
     private boolean initialized;
 
     static {
@@ -124,6 +133,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         this.id = id;
         this.config = config;
         this.gatewayAdapter = gatewayAdapter;
+        this.paramsetDescriptionCache = new ParamsetDescriptionCache(id);
     }
 
     @Override
@@ -183,6 +193,9 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         stopClients();
         devices.clear();
         echoEvents.clear();
+        logger.debug("Forwarded {} and suppressed {} events from gateway with id '{}'", eventCoalescer.getForwarded(),
+                eventCoalescer.getSuppressed(), id);
+        eventCoalescer.clear();
         availableInterfaces.clear();
         config.setGatewayInfo(null);
     }
@@ -215,8 +228,14 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     private void startServers() throws IOException {
         for (TransferMode mode : availableInterfaces.values()) {
             if (!rpcServers.containsKey(mode)) {
-                RpcServer rpcServer = mode == TransferMode.XML_RPC ? new XmlRpcServer(this, config)
-                        : new BinRpcServer(this, config);
+                RpcServer rpcServer;
+                if (mode == TransferMode.XML_RPC) {
+                    rpcServer = new XmlRpcServer(this, config);
+                } else if (config.isNioCallbackServer()) {
+                    rpcServer = new BinRpcNioServer(this, config);
+                } else {
+                    rpcServer = new BinRpcServer(this, config);
+                }
                 rpcServers.put(mode, rpcServer);
                 rpcServer.start();
             }
@@ -319,6 +338,21 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         return dp;
     }
 
+    /**
+     * Returns the number of events from the gateway which have been forwarded to the things.
+     */
+    public long getForwardedEventCount() {
+        return eventCoalescer.getForwarded();
+    }
+
+    /**
+     * Returns the number of events from the gateway which have been suppressed, either echo events or unchanged values
+     * within the coalescing window.
+     */
+    public long getSuppressedEventCount() {
+        return eventCoalescer.getSuppressed();
+    }
+
     @Override
     public HmDevice getDevice(String address) throws HomematicClientException {
         HmDevice device = devices.get(address);
@@ -337,57 +371,106 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
     @Override
     public void loadAllDeviceMetadata() throws IOException {
         cancelLoadAllMetadata = false;
+        long start = System.currentTimeMillis();
+        paramsetDescriptionCache.load();
+        paramsetDescriptionCache.resetCounters();
+
         // load all device descriptions
         List<HmDevice> deviceDescriptions = getDeviceDescriptions();
-
-        // loading datapoints for all channels
-        Set<String> loadedDevices = new HashSet<String>();
-        Map<String, Collection<HmDatapoint>> datapointsByChannelIdCache = new HashMap<String, Collection<HmDatapoint>>();
+        Map<HmInterface, List<HmDevice>> devicesByInterface = new HashMap<HmInterface, List<HmDevice>>();
         for (HmDevice device : deviceDescriptions) {
-            if (!cancelLoadAllMetadata) {
-                try {
-                    logger.trace("Loading metadata for device '{}' of type '{}'", device.getAddress(),
-                            device.getType());
-                    if (device.isGatewayExtras()) {
-                        loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_VARIABLE));
-                        loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_SCRIPT));
-                    } else {
-                        for (HmChannel channel : device.getChannels()) {
-                            logger.trace("  Loading channel {}", channel);
-                            // speed up metadata generation a little bit for equal channels in the gateway devices
-                            if ((DEVICE_TYPE_VIRTUAL.equals(device.getType())
-                                    || DEVICE_TYPE_VIRTUAL_WIRED.equals(device.getType())) && channel.getNumber() > 1) {
-                                HmChannel previousChannel = device.getChannel(channel.getNumber() - 1);
-                                cloneAllDatapointsIntoChannel(channel, previousChannel.getDatapoints().values());
-                            } else {
-                                String channelId = String.format("%s:%s:%s", channel.getDevice().getType(),
-                                        channel.getDevice().getFirmware(), channel.getNumber());
-                                Collection<HmDatapoint> cachedDatapoints = datapointsByChannelIdCache.get(channelId);
-                                if (cachedDatapoints != null) {
-                                    // clone all datapoints
-                                    cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
-                                } else {
-                                    logger.trace("    Loading datapoints into channel {}", channel);
-                                    addChannelDatapoints(channel, HmParamsetType.MASTER);
-                                    addChannelDatapoints(channel, HmParamsetType.VALUES);
-                                    datapointsByChannelIdCache.put(channelId, channel.getDatapoints().values());
-                                }
-                            }
+            List<HmDevice> interfaceDevices = devicesByInterface.get(device.getHmInterface());
+            if (interfaceDevices == null) {
+                interfaceDevices = new ArrayList<HmDevice>();
+                devicesByInterface.put(device.getHmInterface(), interfaceDevices);
+            }
+            interfaceDevices.add(device);
+        }
+
+        // loading datapoints for all channels, each interface in parallel
+        final Set<String> loadedDevices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final Map<String, Collection<HmDatapoint>> datapointsByChannelIdCache = new ConcurrentHashMap<String, Collection<HmDatapoint>>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final List<HmDevice> interfaceDevices : devicesByInterface.values()) {
+            futures.add(ThreadPoolManager.getPool(METADATA_POOL_NAME).submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (HmDevice device : interfaceDevices) {
+                        if (!cancelLoadAllMetadata && loadDeviceMetadata(device, datapointsByChannelIdCache)) {
+                            loadedDevices.add(device.getAddress());
                         }
                     }
-                    prepareDevice(device);
-                    loadedDevices.add(device.getAddress());
-                    gatewayAdapter.onDeviceLoaded(device);
-                } catch (IOException ex) {
-                    logger.warn("Can't load device with address '{}' from gateway '{}': {}", device.getAddress(), id,
-                            ex.getMessage());
                 }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Loading of the device metadata interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException(ex.getCause().getMessage(), ex.getCause());
             }
         }
+
         if (!cancelLoadAllMetadata) {
             devices.keySet().retainAll(loadedDevices);
         }
+        paramsetDescriptionCache.save();
         initialized = true;
+        logger.info(
+                "Loaded metadata of {} devices from gateway with id '{}' in {} ms ({} paramset descriptions from cache, {} from gateway)",
+                loadedDevices.size(), id, System.currentTimeMillis() - start, paramsetDescriptionCache.getHits(),
+                paramsetDescriptionCache.getMisses());
+    }
+
+    /**
+     * Loads the datapoints of all channels of the device, prepares the device and notifies the gateway adapter.
+     * Returns false, if the device could not be loaded.
+     */
+    private boolean loadDeviceMetadata(HmDevice device, Map<String, Collection<HmDatapoint>> datapointsByChannelIdCache) {
+        try {
+            logger.trace("Loading metadata for device '{}' of type '{}'", device.getAddress(), device.getType());
+            if (device.isGatewayExtras()) {
+                loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_VARIABLE));
+                loadChannelValues(device.getChannel(HmChannel.CHANNEL_NUMBER_SCRIPT));
+            } else {
+                for (HmChannel channel : device.getChannels()) {
+                    logger.trace("  Loading channel {}", channel);
+                    // speed up metadata generation a little bit for equal channels in the gateway devices
+                    if ((DEVICE_TYPE_VIRTUAL.equals(device.getType())
+                            || DEVICE_TYPE_VIRTUAL_WIRED.equals(device.getType())) && channel.getNumber() > 1) {
+                        HmChannel previousChannel = device.getChannel(channel.getNumber() - 1);
+                        cloneAllDatapointsIntoChannel(channel, previousChannel.getDatapoints().values());
+                    } else {
+                        String channelId = String.format("%s:%s:%s", channel.getDevice().getType(),
+                                channel.getDevice().getFirmware(), channel.getNumber());
+                        Collection<HmDatapoint> cachedDatapoints = datapointsByChannelIdCache.get(channelId);
+                        if (cachedDatapoints != null) {
+                            // clone all datapoints
+                            cloneAllDatapointsIntoChannel(channel, cachedDatapoints);
+                        } else {
+                            logger.trace("    Loading datapoints into channel {}", channel);
+                            addChannelDatapoints(channel, HmParamsetType.MASTER);
+                            addChannelDatapoints(channel, HmParamsetType.VALUES);
+                            datapointsByChannelIdCache.put(channelId, channel.getDatapoints().values());
+                        }
+                    }
+                }
+            }
+            // the type generator is not thread safe, devices of different interfaces are prepared one by one
+            synchronized (deviceLoadLock) {
+                prepareDevice(device);
+                gatewayAdapter.onDeviceLoaded(device);
+            }
+            return true;
+        } catch (IOException ex) {
+            logger.warn("Can't load device with address '{}' from gateway '{}': {}", device.getAddress(), id,
+                    ex.getMessage());
+            return false;
+        }
     }
 
     /**
@@ -395,7 +478,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
      */
     protected void addChannelDatapoints(HmChannel channel, HmParamsetType paramsetType) throws IOException {
         try {
-            getRpcClient(channel.getDevice().getHmInterface()).addChannelDatapoints(channel, paramsetType);
+            loadChannelDatapoints(channel, paramsetType);
         } catch (UnknownParameterSetException ex) {
             logger.info(
                     "Can not load metadata for device: {}, channel: {}, paramset: {}, maybe there are no channels available",
@@ -403,6 +486,20 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
         }
     }
 
+    /**
+     * Loads the datapoints of the channel, the paramset description is served from the persistent cache if available.
+     */
+    protected void loadChannelDatapoints(HmChannel channel, HmParamsetType paramsetType) throws IOException {
+        String key = paramsetDescriptionCache.getKey(config.getGatewayInfo(), channel, paramsetType);
+        Object[] description = paramsetDescriptionCache.get(key);
+        if (description == null) {
+            description = getRpcClient(channel.getDevice().getHmInterface()).getParamsetDescription(channel,
+                    paramsetType);
+            paramsetDescriptionCache.put(key, description);
+        }
+        new GetParamsetDescriptionParser(channel, paramsetType).parse(description);
+    }
+
     /**
      * Loads all device descriptions from the gateway.
      */
@@ -593,6 +690,7 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
 
         if (echoEvents.remove(dpInfo)) {
             logger.debug("Echo event detected, ignoring '{}'", dpInfo);
+            eventCoalescer.suppressed();
         } else {
             try {
                 if (connectionTrackerThread != null && dpInfo.isPong() && id.equals(newValue)) {
@@ -601,6 +699,10 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
 
                 final HmDatapoint dp = getDatapoint(dpInfo);
                 HmDatapointConfig config = gatewayAdapter.getDatapointConfig(dp);
+                if (!eventCoalescer.accept(dpInfo, dp, newValue, config.getCoalesceWindow())) {
+                    logger.trace("Unchanged value within coalescing window, ignoring '{}'", dpInfo);
+                    return;
+                }
                 receiveDelayedExecutor.start(dpInfo, config.getReceiveDelay(), () -> {
                     dp.setValue(newValue);
 
@@ -636,10 +738,13 @@ public abstract class AbstractHomematicGateway implements RpcEventListener, Home
                                 addChannelDatapoints(channel, HmParamsetType.MASTER);
                                 addChannelDatapoints(channel, HmParamsetType.VALUES);
                             }
-                            prepareDevice(device);
-                            gatewayAdapter.onNewDevice(device);
+                            synchronized (deviceLoadLock) {
+                                prepareDevice(device);
+                                gatewayAdapter.onNewDevice(device);
+                            }
                         }
                     }
+                    paramsetDescriptionCache.save();
                 } catch (Exception ex) {
                     logger.error("{}", ex.getMessage(), ex);
                 }
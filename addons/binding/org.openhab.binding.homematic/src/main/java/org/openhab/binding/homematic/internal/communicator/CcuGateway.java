@@ -13,7 +13,10 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.ObjectUtils;
@@ -22,13 +25,16 @@ import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.openhab.binding.homematic.internal.communicator.client.UnknownParameterSetException;
 import org.openhab.binding.homematic.internal.communicator.client.UnknownRpcFailureException;
 import org.openhab.binding.homematic.internal.communicator.parser.CcuLoadDeviceNamesParser;
 import org.openhab.binding.homematic.internal.communicator.parser.CcuParamsetDescriptionParser;
 import org.openhab.binding.homematic.internal.communicator.parser.CcuValueParser;
+import org.openhab.binding.homematic.internal.communicator.parser.CcuVariableValuesParser;
 import org.openhab.binding.homematic.internal.communicator.parser.CcuVariablesAndScriptsParser;
+import org.openhab.binding.homematic.internal.misc.HomematicClientException;
 import org.openhab.binding.homematic.internal.model.HmChannel;
 import org.openhab.binding.homematic.internal.model.HmDatapoint;
 import org.openhab.binding.homematic.internal.model.HmDevice;
@@ -54,6 +60,8 @@ public class CcuGateway extends AbstractHomematicGateway {
     private Map<String, String> tclregaScripts;
     private HttpClient httpClient;
     private XStream xStream = new XStream(new StaxDriver());
+    private ScheduledFuture<?> variablesPollFuture;
+    private ScheduledFuture<?> hotVariablesPollFuture;
 
     protected CcuGateway(String id, HomematicConfig config, HomematicGatewayAdapter gatewayAdapter) {
         super(id, config, gatewayAdapter);
@@ -94,6 +102,89 @@ public class CcuGateway extends AbstractHomematicGateway {
         }
     }
 
+    @Override
+    public void startWatchdogs() {
+        super.startWatchdogs();
+        stopVariablePolls();
+        ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(GATEWAY_POOL_NAME);
+
+        int interval = config.getVariablesPollInterval();
+        if (interval > 0) {
+            logger.debug("Polling all variables every {} seconds from gateway with id '{}'", interval, getId());
+            variablesPollFuture = scheduler.scheduleWithFixedDelay(() -> pollVariables(null), interval, interval,
+                    TimeUnit.SECONDS);
+        }
+
+        int hotInterval = config.getHotVariablesPollInterval();
+        String[] hotVariables = StringUtils.stripAll(StringUtils.split(config.getHotVariables(), ','));
+        if (hotInterval > 0 && hotVariables != null && hotVariables.length > 0) {
+            logger.debug("Polling variables '{}' every {} seconds from gateway with id '{}'",
+                    StringUtils.join(hotVariables, ", "), hotInterval, getId());
+            // the names end up inside a quoted TclRega string literal
+            final String variableNames = StringUtils.join(escapeScriptString(hotVariables), "\\t");
+            hotVariablesPollFuture = scheduler.scheduleWithFixedDelay(() -> pollVariables(variableNames), hotInterval,
+                    hotInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        stopVariablePolls();
+        super.dispose();
+    }
+
+    /**
+     * Cancels the variable polls, if running.
+     */
+    private void stopVariablePolls() {
+        if (variablesPollFuture != null) {
+            variablesPollFuture.cancel(true);
+            variablesPollFuture = null;
+        }
+        if (hotVariablesPollFuture != null) {
+            hotVariablesPollFuture.cancel(true);
+            hotVariablesPollFuture = null;
+        }
+    }
+
+    /**
+     * Escapes backslashes and double quotes, so the values can be used inside a quoted TclRega string.
+     */
+    private String[] escapeScriptString(String[] values) {
+        String[] escaped = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            escaped[i] = StringUtils.replaceEach(values[i], new String[] { "\\", "\"" },
+                    new String[] { "\\\\", "\\\"" });
+        }
+        return escaped;
+    }
+
+    /**
+     * Loads the values of the given variables (all variables if null) and publishes only the changed values.
+     */
+    private void pollVariables(String variableNames) {
+        try {
+            HmDevice device = getDevice(HmDevice.ADDRESS_GATEWAY_EXTRAS);
+            HmChannel channel = device.getChannel(HmChannel.CHANNEL_NUMBER_VARIABLE);
+            if (channel == null || !channel.isInitialized()) {
+                return;
+            }
+            TclScriptDataList resultList = variableNames == null
+                    ? sendScriptByName("getAllVariableValues", TclScriptDataList.class)
+                    : sendScriptByName("getVariableValues", TclScriptDataList.class, new String[] { "variable_names" },
+                            new String[] { variableNames });
+            List<HmDatapoint> changedDatapoints = new CcuVariableValuesParser(channel).parse(resultList);
+            logger.trace("Polled variables from gateway with id '{}', {} changed", getId(), changedDatapoints.size());
+            for (HmDatapoint dp : changedDatapoints) {
+                getGatewayAdapter().onStateUpdated(dp);
+            }
+        } catch (HomematicClientException ex) {
+            // gateway extras not loaded yet
+        } catch (Exception ex) {
+            logger.debug("Polling variables from gateway with id '{}' failed: {}", getId(), ex.getMessage());
+        }
+    }
+
     @Override
     protected void loadVariables(HmChannel channel) throws IOException {
         TclScriptDataList resultList = sendScriptByName("getAllVariables", TclScriptDataList.class);
@@ -144,7 +235,7 @@ public class CcuGateway extends AbstractHomematicGateway {
     @Override
     protected void addChannelDatapoints(HmChannel channel, HmParamsetType paramsetType) throws IOException {
         try {
-            getRpcClient(channel.getDevice().getHmInterface()).addChannelDatapoints(channel, paramsetType);
+            loadChannelDatapoints(channel, paramsetType);
         } catch (UnknownParameterSetException ex) {
             logger.debug(
                     "RpcMessage RPC failure (-3 Unknown paramset), fetching metadata with TclRega script for device: {}, channel: {}, paramset: {}",
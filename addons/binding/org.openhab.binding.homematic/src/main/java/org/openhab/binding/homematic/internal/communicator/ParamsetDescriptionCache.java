@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.openhab.binding.homematic.internal.model.HmChannel;
+import org.openhab.binding.homematic.internal.model.HmDevice;
+import org.openhab.binding.homematic.internal.model.HmGatewayInfo;
+import org.openhab.binding.homematic.internal.model.HmInterface;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the raw paramset descriptions, keyed by device type and firmware. The description of a channel
+ * only depends on the device type, the firmware of the device and the gateway, so unchanged devices never need to be
+ * fetched again from the gateway.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ */
+public class ParamsetDescriptionCache {
+    private final Logger logger = LoggerFactory.getLogger(ParamsetDescriptionCache.class);
+
+    private static final String CACHE_FOLDER = ConfigConstants.getUserDataFolder() + File.separator + "homematic";
+
+    private File cacheFile;
+    private Map<String, Object[]> descriptions = new ConcurrentHashMap<String, Object[]>();
+    private boolean loaded;
+    private volatile boolean dirty;
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+
+    public ParamsetDescriptionCache(String gatewayId) {
+        this.cacheFile = new File(CACHE_FOLDER, gatewayId + ".paramsets");
+    }
+
+    /**
+     * Returns the cache key for the paramset description of the channel or null, if the description can't be cached.
+     */
+    public String getKey(HmGatewayInfo gatewayInfo, HmChannel channel, HmParamsetType paramsetType) {
+        HmDevice device = channel.getDevice();
+        if (device.getFirmware() == null || device.getHmInterface() == HmInterface.CUXD || device.isGatewayExtras()) {
+            return null;
+        }
+        return String.format("%s:%s:%s:%s:%s:%s:%s", gatewayInfo.getId(), gatewayInfo.getFirmware(),
+                device.getHmInterface(), device.getType(), device.getFirmware(), channel.getNumber(), paramsetType);
+    }
+
+    /**
+     * Returns the cached paramset description or null, if it is not available.
+     */
+    public Object[] get(String key) {
+        Object[] description = key == null ? null : descriptions.get(key);
+        if (description == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return description;
+    }
+
+    /**
+     * Adds a paramset description to the cache.
+     */
+    public void put(String key, Object[] description) {
+        if (key != null && description != null) {
+            descriptions.put(key, description);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Returns the number of descriptions served from the cache since the last reset.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of descriptions which had to be fetched from the gateway since the last reset.
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Loads the cache from disk, only the first call reads the file.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!cacheFile.exists()) {
+            return;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            descriptions.putAll((Map<String, Object[]>) ois.readObject());
+            logger.debug("Loaded {} paramset descriptions from '{}'", descriptions.size(), cacheFile);
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            logger.info("Can't load paramset description cache '{}', discarding it: {}", cacheFile, ex.getMessage());
+            descriptions.clear();
+        }
+    }
+
+    /**
+     * Writes the cache to disk, if it has been changed.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        File folder = cacheFile.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            logger.warn("Can't create folder '{}' for the paramset description cache", folder);
+            return;
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+            oos.writeObject(new HashMap<String, Object[]>(descriptions));
+            dirty = false;
+            logger.debug("Saved {} paramset descriptions to '{}'", descriptions.size(), cacheFile);
+        } catch (IOException ex) {
+            logger.warn("Can't save paramset description cache '{}': {}", cacheFile, ex.getMessage());
+        }
+    }
+}
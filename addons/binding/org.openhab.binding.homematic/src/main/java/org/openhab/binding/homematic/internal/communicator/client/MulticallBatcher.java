@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.client;
+
+import static org.openhab.binding.homematic.internal.misc.HomematicConstants.RPC_METHODNAME_SYSTEM_MULTICALL;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.openhab.binding.homematic.internal.communicator.message.RpcRequest;
+import org.openhab.binding.homematic.internal.communicator.parser.RpcResponseParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the RPC calls which are queued within a short window and sends them with one system.multicall request per
+ * port. The calls are sent in the order they have been queued and each result is mapped back to its call. If the
+ * multicall fails, the calls are sent again one by one, therefore only idempotent calls must be queued.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ */
+public class MulticallBatcher<T> {
+    private final Logger logger = LoggerFactory.getLogger(MulticallBatcher.class);
+
+    private static final String MULTICALL_POOL_NAME = "homematicMulticall";
+
+    private RpcClient<T> rpcClient;
+    private int window;
+    private long timeout;
+    private Map<Integer, List<PendingCall<T>>> pendingCallsByPort = new HashMap<Integer, List<PendingCall<T>>>();
+    private Map<Integer, Object> portLocks = new ConcurrentHashMap<Integer, Object>();
+
+    /**
+     * Creates a new batcher for the client, calls are collected for the given window in milliseconds.
+     */
+    public MulticallBatcher(RpcClient<T> rpcClient, int window) {
+        this.rpcClient = rpcClient;
+        this.window = window;
+        this.timeout = window + rpcClient.config.getTimeout() * 1000L * (RpcClient.MAX_RPC_RETRY + 1);
+    }
+
+    /**
+     * Queues the call and waits until the batch containing the call has been sent to the gateway.
+     */
+    public Object[] execute(final int port, String methodName, List<Object> params) throws IOException {
+        RpcRequest<T> request = rpcClient.createRpcRequest(methodName);
+        for (Object param : params) {
+            request.addArg(param);
+        }
+        PendingCall<T> call = new PendingCall<T>(request, methodName, params);
+
+        boolean scheduleFlush;
+        synchronized (pendingCallsByPort) {
+            List<PendingCall<T>> pendingCalls = pendingCallsByPort.get(port);
+            scheduleFlush = pendingCalls == null;
+            if (scheduleFlush) {
+                pendingCalls = new ArrayList<PendingCall<T>>();
+                pendingCallsByPort.put(port, pendingCalls);
+            }
+            pendingCalls.add(call);
+        }
+        if (scheduleFlush) {
+            ThreadPoolManager.getScheduledPool(MULTICALL_POOL_NAME).schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    flush(port);
+                }
+            }, window, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            return call.result.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + methodName, ex);
+        } catch (TimeoutException ex) {
+            throw new IOException("Timeout while waiting for " + methodName, ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Fails all pending calls.
+     */
+    public void dispose() {
+        synchronized (pendingCallsByPort) {
+            for (List<PendingCall<T>> pendingCalls : pendingCallsByPort.values()) {
+                for (PendingCall<T> call : pendingCalls) {
+                    call.result.completeExceptionally(new IOException("RPC client disposed"));
+                }
+            }
+            pendingCallsByPort.clear();
+        }
+    }
+
+    /**
+     * Sends all pending calls of the port. Flushes of the same port never overlap, so the order of the calls is kept.
+     */
+    private void flush(int port) {
+        Object portLock = portLocks.computeIfAbsent(port, p -> new Object());
+        synchronized (portLock) {
+            List<PendingCall<T>> pendingCalls;
+            synchronized (pendingCallsByPort) {
+                pendingCalls = pendingCallsByPort.remove(port);
+            }
+            if (pendingCalls == null || pendingCalls.isEmpty()) {
+                return;
+            }
+
+            if (pendingCalls.size() == 1) {
+                sendSingle(port, pendingCalls.get(0));
+            } else {
+                sendMulticall(port, pendingCalls);
+            }
+        }
+    }
+
+    /**
+     * Sends all calls with one system.multicall request, falls back to single requests if the multicall fails.
+     */
+    private void sendMulticall(int port, List<PendingCall<T>> pendingCalls) {
+        RpcRequest<T> request = rpcClient.createRpcRequest(RPC_METHODNAME_SYSTEM_MULTICALL);
+        List<Object> calls = new ArrayList<Object>(pendingCalls.size());
+        for (PendingCall<T> call : pendingCalls) {
+            Map<String, Object> callStruct = new HashMap<String, Object>();
+            callStruct.put("methodName", call.methodName);
+            callStruct.put("params", call.params);
+            calls.add(callStruct);
+        }
+        request.addArg(calls);
+
+        Object[] results;
+        try {
+            logger.debug("Sending {} calls with one multicall to port {}", pendingCalls.size(), port);
+            Object[] response = rpcClient.sendMessage(port, request);
+            if (!(response[0] instanceof Object[]) || ((Object[]) response[0]).length != pendingCalls.size()) {
+                throw new IOException("Unexpected multicall result");
+            }
+            results = (Object[]) response[0];
+        } catch (IOException ex) {
+            logger.debug("Multicall to port {} failed, sending the calls one by one: {}", port, ex.getMessage());
+            for (PendingCall<T> call : pendingCalls) {
+                sendSingle(port, call);
+            }
+            return;
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            PendingCall<T> call = pendingCalls.get(i);
+            Object result = results[i];
+            try {
+                Object[] callResult = result instanceof Object[] ? (Object[]) result : new Object[] { result };
+                call.result.complete(
+                        callResult.length == 0 ? callResult : new RpcResponseParser(call.request).parse(callResult));
+            } catch (IOException ex) {
+                call.result.completeExceptionally(ex);
+            }
+        }
+    }
+
+    private void sendSingle(int port, PendingCall<T> call) {
+        try {
+            call.result.complete(rpcClient.sendMessage(port, call.request));
+        } catch (Exception ex) {
+            call.result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * A queued call with its result.
+     */
+    private static class PendingCall<T> {
+        private RpcRequest<T> request;
+        private String methodName;
+        private List<Object> params;
+        private CompletableFuture<Object[]> result = new CompletableFuture<Object[]>();
+
+        public PendingCall(RpcRequest<T> request, String methodName, List<Object> params) {
+            this.request = request;
+            this.methodName = methodName;
+            this.params = params;
+        }
+    }
+}
@@ -9,6 +9,7 @@
 package org.openhab.binding.homematic.internal.communicator.client;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -20,7 +21,6 @@ import org.openhab.binding.homematic.internal.communicator.message.RpcRequest;
 import org.openhab.binding.homematic.internal.communicator.parser.GetAllScriptsParser;
 import org.openhab.binding.homematic.internal.communicator.parser.GetAllSystemVariablesParser;
 import org.openhab.binding.homematic.internal.communicator.parser.GetDeviceDescriptionParser;
-import org.openhab.binding.homematic.internal.communicator.parser.GetParamsetDescriptionParser;
 import org.openhab.binding.homematic.internal.communicator.parser.GetParamsetParser;
 import org.openhab.binding.homematic.internal.communicator.parser.GetValueParser;
 import org.openhab.binding.homematic.internal.communicator.parser.HomegearLoadDeviceNamesParser;
@@ -47,15 +47,23 @@ public abstract class RpcClient<T> {
     protected static final int MAX_RPC_RETRY = 1;
 
     protected HomematicConfig config;
+    private MulticallBatcher<T> multicallBatcher;
 
     public RpcClient(HomematicConfig config) {
         this.config = config;
+        if (config.getMulticallWindow() > 0) {
+            multicallBatcher = new MulticallBatcher<T>(this, config.getMulticallWindow());
+        }
     }
 
     /**
      * Disposes the client.
      */
-    public abstract void dispose();
+    public void dispose() {
+        if (multicallBatcher != null) {
+            multicallBatcher.dispose();
+        }
+    }
 
     /**
      * Returns a RpcRequest for this client.
@@ -159,13 +167,13 @@ public abstract class RpcClient<T> {
     }
 
     /**
-     * Loads all datapoint metadata into the given channel.
+     * Returns the raw paramset description of the given channel.
      */
-    public void addChannelDatapoints(HmChannel channel, HmParamsetType paramsetType) throws IOException {
+    public Object[] getParamsetDescription(HmChannel channel, HmParamsetType paramsetType) throws IOException {
         RpcRequest<T> request = createRpcRequest("getParamsetDescription");
         request.addArg(getRpcAddress(channel.getDevice().getAddress()) + ":" + channel.getNumber());
         request.addArg(paramsetType.toString());
-        new GetParamsetDescriptionParser(channel, paramsetType).parse(sendMessage(config.getRpcPort(channel), request));
+        return sendMessage(config.getRpcPort(channel), request);
     }
 
     /**
@@ -277,7 +285,16 @@ public abstract class RpcClient<T> {
         }
 
         RpcRequest<T> request;
-        if (HmParamsetType.VALUES == dp.getParamsetType()) {
+        // a failed multicall is resent call by call, so only idempotent values are batched
+        if (HmParamsetType.VALUES == dp.getParamsetType() && multicallBatcher != null && !dp.isPressDatapoint()
+                && !dp.isActionType()) {
+            List<Object> params = new ArrayList<Object>();
+            params.add(getRpcAddress(dp.getChannel().getDevice().getAddress()) + ":" + dp.getChannel().getNumber());
+            params.add(dp.getName());
+            params.add(value);
+            multicallBatcher.execute(config.getRpcPort(dp.getChannel()), "setValue", params);
+            return;
+        } else if (HmParamsetType.VALUES == dp.getParamsetType()) {
             request = createRpcRequest("setValue");
             request.addArg(getRpcAddress(dp.getChannel().getDevice().getAddress()) + ":" + dp.getChannel().getNumber());
             request.addArg(dp.getName());
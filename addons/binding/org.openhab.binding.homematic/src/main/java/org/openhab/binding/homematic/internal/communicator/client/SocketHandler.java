@@ -11,76 +11,156 @@ package org.openhab.binding.homematic.internal.communicator.client;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openhab.binding.homematic.internal.common.HomematicConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Simple socket cache class.
+ * Socket pool, each port of the gateway has its own pool of idle sockets. A socket is borrowed exclusively for one
+ * request and returned afterwards, so requests to different ports or multiple requests to the same port don't block
+ * each other.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class SocketHandler {
     private final Logger logger = LoggerFactory.getLogger(SocketHandler.class);
 
-    private Map<Integer, SocketInfo> socketsPerPort = new HashMap<Integer, SocketInfo>();
+    private static final int MAX_IDLE_SOCKETS_PER_PORT = 4;
+
+    private Map<Integer, Deque<SocketInfo>> idleSocketsPerPort = new ConcurrentHashMap<Integer, Deque<SocketInfo>>();
     private HomematicConfig config;
 
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+    private AtomicLong connectTime = new AtomicLong();
+
     public SocketHandler(HomematicConfig config) {
         this.config = config;
     }
 
     /**
-     * Returns a socket for the given port, (re)creates it if required.
+     * Returns an exclusive socket for the given port, an idle socket is reused if it is still valid.
      */
-    public Socket getSocket(int port) throws IOException {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo == null) {
-            logger.trace("Creating new socket for port {}", port);
-            Socket socket = new Socket();
+    public SocketInfo borrowSocket(int port) throws IOException {
+        Deque<SocketInfo> idleSockets = getIdleSockets(port);
+        SocketInfo socketInfo;
+        while ((socketInfo = idleSockets.pollFirst()) != null) {
+            if (isValid(socketInfo)) {
+                hits.incrementAndGet();
+                logger.trace("Returning socket for port {}", port);
+                return socketInfo;
+            }
+            closeSilent(socketInfo.getSocket());
+        }
+
+        misses.incrementAndGet();
+        logger.trace("Creating new socket for port {}", port);
+        long start = System.nanoTime();
+        Socket socket = new Socket();
+        try {
             socket.setSoTimeout(config.getTimeout() * 1000);
             socket.connect(new InetSocketAddress(config.getGatewayAddress(), port), socket.getSoTimeout());
-            socketInfo = new SocketInfo(socket);
-            socketsPerPort.put(port, socketInfo);
-        } else {
-            boolean isMaxAliveReached = System.currentTimeMillis()
-                    - socketInfo.getCreated() > (config.getSocketMaxAlive() * 1000);
+        } catch (IOException ex) {
+            closeSilent(socket);
+            throw ex;
+        }
+        connectTime.addAndGet(System.nanoTime() - start);
+        return new SocketInfo(socket, port);
+    }
 
-            if (isMaxAliveReached) {
-                logger.debug("Max alive time reached for socket on port {}", port);
-                removeSocket(port);
-                return getSocket(port);
-            }
-            logger.trace("Returning socket for port {}", port);
+    /**
+     * Returns a socket to the pool after a successful request.
+     */
+    public void returnSocket(SocketInfo socketInfo) {
+        Deque<SocketInfo> idleSockets = getIdleSockets(socketInfo.getPort());
+        if (isValid(socketInfo) && idleSockets.size() < MAX_IDLE_SOCKETS_PER_PORT) {
+            idleSockets.offerFirst(socketInfo);
+        } else {
+            closeSilent(socketInfo.getSocket());
         }
-        return socketInfo.getSocket();
     }
 
     /**
-     * Removes the socket for the given port from the cache.
+     * Closes a socket after a failed request, it is not returned to the pool.
+     */
+    public void invalidateSocket(SocketInfo socketInfo) {
+        logger.trace("Closing Socket on port {}", socketInfo.getPort());
+        closeSilent(socketInfo.getSocket());
+    }
+
+    /**
+     * Removes all idle sockets for the given port from the pool.
      */
     public void removeSocket(int port) {
-        SocketInfo socketInfo = socketsPerPort.get(port);
-        if (socketInfo != null) {
-            logger.trace("Closing Socket on port {}", port);
-            socketsPerPort.remove(port);
-            closeSilent(socketInfo.getSocket());
+        Deque<SocketInfo> idleSockets = idleSocketsPerPort.get(port);
+        if (idleSockets != null) {
+            logger.trace("Closing Sockets on port {}", port);
+            SocketInfo socketInfo;
+            while ((socketInfo = idleSockets.pollFirst()) != null) {
+                closeSilent(socketInfo.getSocket());
+            }
         }
     }
 
     /**
-     * Removes all cached sockets.
+     * Removes all idle sockets.
      */
     public void flush() {
-        synchronized (SocketHandler.class) {
-            Integer[] portsToRemove = socketsPerPort.keySet().toArray(new Integer[0]);
-            for (Integer key : portsToRemove) {
-                removeSocket(key);
-            }
+        for (Integer port : idleSocketsPerPort.keySet()) {
+            removeSocket(port);
+        }
+        if (logger.isDebugEnabled()) {
+            int created = misses.get();
+            logger.debug("Socket pool statistics: {} hits, {} misses, {} ms average connect time", hits.get(), created,
+                    created == 0 ? 0 : connectTime.get() / created / 1000000);
+        }
+    }
+
+    /**
+     * Returns the number of requests which reused an idle socket.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests which had to create a new socket.
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the total time in nanoseconds spent for connecting new sockets.
+     */
+    public long getConnectTime() {
+        return connectTime.get();
+    }
+
+    private Deque<SocketInfo> getIdleSockets(int port) {
+        return idleSocketsPerPort.computeIfAbsent(port, p -> new ConcurrentLinkedDeque<SocketInfo>());
+    }
+
+    /**
+     * Returns true, if the socket is still connected and its max alive time is not exceeded.
+     */
+    private boolean isValid(SocketInfo socketInfo) {
+        Socket socket = socketInfo.getSocket();
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - socketInfo.getCreated() > config.getSocketMaxAlive() * 1000L) {
+            logger.debug("Max alive time reached for socket on port {}", socketInfo.getPort());
+            return false;
         }
+        return true;
     }
 
     /**
@@ -17,10 +17,12 @@ import java.net.Socket;
  */
 public class SocketInfo {
     private Socket socket;
+    private int port;
     private long created;
 
-    public SocketInfo(Socket socket) {
+    public SocketInfo(Socket socket, int port) {
         this.socket = socket;
+        this.port = port;
         this.created = System.currentTimeMillis();
     }
 
@@ -31,6 +33,13 @@ public class SocketInfo {
         return socket;
     }
 
+    /**
+     * Returns the gateway port of the socket.
+     */
+    public int getPort() {
+        return port;
+    }
+
     /**
      * Returns the timestamp when the socket has been created.
      */
@@ -47,6 +47,7 @@ public class XmlRpcClient extends RpcClient<String> {
 
     @Override
     public void dispose() {
+        super.dispose();
         if (httpClient != null) {
             httpClient.destroy();
         }
@@ -89,13 +90,13 @@ public class XmlRpcClient extends RpcClient<String> {
                     .timeout(config.getTimeout(), TimeUnit.SECONDS)
                     .header(HttpHeader.CONTENT_TYPE, "text/xml;charset=" + config.getEncoding()).send();
 
-            String result = new String(response.getContent(), config.getEncoding());
+            byte[] result = response.getContent();
             if (logger.isTraceEnabled()) {
-                logger.trace("Client XmlRpcResponse (port {}):\n{}", port, result);
+                logger.trace("Client XmlRpcResponse (port {}):\n{}", port, new String(result, config.getEncoding()));
             }
 
-            Object[] data = new XmlRpcResponse(new ByteArrayInputStream(result.getBytes(config.getEncoding())),
-                    config.getEncoding()).getResponseData();
+            Object[] data = new XmlRpcResponse(new ByteArrayInputStream(result), config.getEncoding())
+                    .getResponseData();
             return new RpcResponseParser(request).parse(data);
         } catch (UnknownRpcFailureException | UnknownParameterSetException ex) {
             throw ex;
@@ -11,33 +11,47 @@ package org.openhab.binding.homematic.internal.communicator.message;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 import java.text.ParseException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Handles BIN-RPC request and response messages to communicate with a Homematic gateway.
+ * <p>
+ * Incoming frames are decoded in place from a {@link ByteBuffer}, outgoing frames are encoded into a growing buffer
+ * which can be written to a stream without copying it again.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     private final Logger logger = LoggerFactory.getLogger(BinRpcMessage.class);
 
+    /**
+     * Length of the BIN-RPC header, the signature 'Bin', the type and the length of the content.
+     */
+    public static final int HEADER_LENGTH = 8;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final double MANTISSA_SCALE = 1 << 30;
+    private static final double DECIMAL_SCALE = 1000000d;
+    private static final double MAX_SCALED_VALUE = 1e9;
+
     public enum TYPE {
         REQUEST,
         RESPONSE;
@@ -46,11 +60,14 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     private Object[] messageData;
     private byte binRpcData[];
     private int offset;
+    private int dataOffset;
+    private int argsOffset = -1;
+    private ByteBuffer frame;
 
     private String methodName;
     private TYPE type;
     private int args;
-    private String encoding;
+    private Charset charset;
 
     public BinRpcMessage(String methodName, String encoding) {
         this(methodName, TYPE.REQUEST, encoding);
@@ -62,7 +79,7 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     public BinRpcMessage(String methodName, TYPE type, String encoding) {
         this.methodName = methodName;
         this.type = type;
-        this.encoding = encoding;
+        this.charset = toCharset(encoding);
         createHeader();
     }
 
@@ -70,49 +87,90 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
      * Decodes a BIN-RPC message from the given InputStream.
      */
     public BinRpcMessage(InputStream is, boolean methodHeader, String encoding) throws IOException {
-        this.encoding = encoding;
-        byte sig[] = new byte[8];
-        int length = is.read(sig, 0, 4);
-        if (length != 4) {
-            throw new EOFException("Only " + length + " bytes received reading signature");
+        this.charset = toCharset(encoding);
+        byte header[] = new byte[HEADER_LENGTH];
+        readFully(is, header, 0, 4, "signature");
+        validateBinXSignature(header);
+        readFully(is, header, 4, 4, "message length");
+
+        int datasize = getFrameLength(header, 0) - HEADER_LENGTH;
+        if (datasize < 0) {
+            throw new IOException("Invalid BIN-RPC message length " + datasize);
         }
-        validateBinXSignature(sig);
-        length = is.read(sig, 4, 4);
-        if (length != 4) {
-            throw new EOFException("Only " + length + " bytes received reading message length");
-        }
-        int datasize = (new BigInteger(ArrayUtils.subarray(sig, 4, 8))).intValue();
-        byte[] message = ArrayUtils.addAll(sig, IOUtils.toByteArray(is, datasize));
-        decodeMessage(message, methodHeader);
+        byte[] message = Arrays.copyOf(header, HEADER_LENGTH + datasize);
+        readFully(is, message, HEADER_LENGTH, datasize, "message");
+        decodeMessage(ByteBuffer.wrap(message), methodHeader);
     }
 
-    private void validateBinXSignature(byte[] sig) throws UnsupportedEncodingException {
-        if (sig[0] != 'B' || sig[1] != 'i' || sig[2] != 'n') {
+    /**
+     * Decodes a BIN-RPC message from the given byte array.
+     */
+    public BinRpcMessage(byte[] message, boolean methodHeader, String encoding) throws IOException, ParseException {
+        this(ByteBuffer.wrap(message), methodHeader, encoding);
+    }
+
+    /**
+     * Decodes a BIN-RPC message from the remaining bytes of the given buffer without copying them. The buffer must
+     * contain exactly one complete frame.
+     */
+    public BinRpcMessage(ByteBuffer message, boolean methodHeader, String encoding) throws IOException {
+        this.charset = toCharset(encoding);
+        if (message.remaining() < HEADER_LENGTH) {
+            throw new EOFException("Only " + message.remaining() + " bytes received");
+        }
+        ByteBuffer buffer = message.slice();
+        if (buffer.get(0) != 'B' || buffer.get(1) != 'i' || buffer.get(2) != 'n') {
             throw new UnsupportedEncodingException("No BinX signature");
         }
+        decodeMessage(buffer, methodHeader);
     }
 
     /**
-     * Decodes a BIN-RPC message from the given byte array.
+     * Returns the total length of a BIN-RPC frame, including the header, from the header starting at the given
+     * position. Returns -1 if the bytes at the position are no BIN-RPC header.
      */
-    public BinRpcMessage(byte[] message, boolean methodHeader, String encoding) throws IOException, ParseException {
-        this.encoding = encoding;
-        if (message.length < 8) {
-            throw new EOFException("Only " + message.length + " bytes received");
+    public static int getFrameLength(byte[] header, int position) {
+        if (header[position] != 'B' || header[position + 1] != 'i' || header[position + 2] != 'n') {
+            return -1;
+        }
+        return HEADER_LENGTH + (((header[position + 4] & 0xFF) << 24) | ((header[position + 5] & 0xFF) << 16)
+                | ((header[position + 6] & 0xFF) << 8) | (header[position + 7] & 0xFF));
+    }
+
+    private static Charset toCharset(String encoding) {
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            return Charset.defaultCharset();
         }
-        validateBinXSignature(message);
-        decodeMessage(message, methodHeader);
     }
 
-    private void decodeMessage(byte[] message, boolean methodHeader) throws IOException {
-        binRpcData = message;
+    private static void readFully(InputStream is, byte[] buffer, int off, int len, String part) throws IOException {
+        int read = 0;
+        while (read < len) {
+            int count = is.read(buffer, off + read, len - read);
+            if (count < 0) {
+                throw new EOFException("Only " + read + " bytes received reading " + part);
+            }
+            read += count;
+        }
+    }
+
+    private void validateBinXSignature(byte[] sig) throws UnsupportedEncodingException {
+        if (sig[0] != 'B' || sig[1] != 'i' || sig[2] != 'n') {
+            throw new UnsupportedEncodingException("No BinX signature");
+        }
+    }
 
-        offset = 8;
+    private void decodeMessage(ByteBuffer message, boolean methodHeader) throws IOException {
+        frame = message;
+        frame.position(HEADER_LENGTH);
 
         if (methodHeader) {
             methodName = readString();
             readInt();
         }
+        dataOffset = frame.position();
         generateResponseData();
     }
 
@@ -121,26 +179,33 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     }
 
     private void generateResponseData() throws IOException {
-        offset = 8 + (methodName != null ? methodName.length() + 8 : 0);
-        List<Object> values = new ArrayList<Object>();
-        while (offset < binRpcData.length) {
-            values.add(readRpcValue());
+        frame.position(dataOffset);
+        Object[] values = new Object[4];
+        int count = 0;
+        while (frame.hasRemaining()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = readRpcValue();
         }
-        messageData = values.toArray();
-        values.clear();
+        messageData = Arrays.copyOf(values, count);
     }
 
     private void createHeader() {
-        binRpcData = new byte[256];
-        addString("Bin ");
+        binRpcData = new byte[INITIAL_BUFFER_SIZE];
+        addByte((byte) 'B');
+        addByte((byte) 'i');
+        addByte((byte) 'n');
+        addByte((byte) 0);
         setType(type);
         addInt(0); // placeholder content length
         if (methodName != null) {
-            addInt(methodName.length());
             addString(methodName);
+            argsOffset = offset;
             addInt(0); // placeholder arguments
         }
-        setInt(4, offset - 8);
+        dataOffset = offset;
+        setInt(4, offset - HEADER_LENGTH);
     }
 
     /**
@@ -149,10 +214,10 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     @Override
     public void addArg(Object argument) {
         addObject(argument);
-        setInt(4, offset - 8);
+        setInt(4, offset - HEADER_LENGTH);
 
-        if (methodName != null) {
-            setInt(12 + methodName.length(), ++args);
+        if (argsOffset != -1) {
+            setInt(argsOffset, ++args);
         }
     }
 
@@ -171,10 +236,17 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
         return binRpcData;
     }
 
+    /**
+     * Writes the encoded message to the given stream without creating a trimmed copy of the buffer.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(binRpcData, 0, offset);
+    }
+
     private void trimBinRpcData() {
-        byte[] trimmed = new byte[offset];
-        System.arraycopy(binRpcData, 0, trimmed, 0, offset);
-        binRpcData = trimmed;
+        if (binRpcData.length != offset) {
+            binRpcData = Arrays.copyOf(binRpcData, offset);
+        }
     }
 
     @Override
@@ -184,42 +256,46 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
 
     // read rpc values
     private int readInt() {
-        byte bi[] = new byte[4];
-        System.arraycopy(binRpcData, offset, bi, 0, 4);
-        offset += 4;
-        return (new BigInteger(bi)).intValue();
+        return frame.getInt();
     }
 
-    private String readString() throws UnsupportedEncodingException {
+    private String readString() {
         int len = readInt();
-        offset += len;
-        return new String(binRpcData, offset - len, len, encoding);
+        String value;
+        if (frame.hasArray()) {
+            value = new String(frame.array(), frame.arrayOffset() + frame.position(), len, charset);
+        } else {
+            byte[] bytes = new byte[len];
+            frame.duplicate().get(bytes);
+            value = new String(bytes, charset);
+        }
+        frame.position(frame.position() + len);
+        return value;
     }
 
     private Object readRpcValue() throws IOException {
         int type = readInt();
         switch (type) {
             case 1:
-                return new Integer(readInt());
+                return Integer.valueOf(readInt());
             case 2:
-                return binRpcData[offset++] != 0 ? Boolean.TRUE : Boolean.FALSE;
+                return frame.get() != 0 ? Boolean.TRUE : Boolean.FALSE;
             case 3:
                 return readString();
             case 4:
                 int mantissa = readInt();
                 int exponent = readInt();
-                BigDecimal bd = new BigDecimal((double) mantissa / (double) (1 << 30) * Math.pow(2, exponent));
-                return bd.setScale(6, RoundingMode.HALF_DOWN).doubleValue();
+                return round(Math.scalb(mantissa / MANTISSA_SCALE, exponent));
             case 5:
-                return new Date(readInt() * 1000);
+                return new Date(readInt() * 1000L);
             case 0x100:
                 // Array
                 int numElements = readInt();
-                Collection<Object> array = new ArrayList<Object>();
-                while (numElements-- > 0) {
-                    array.add(readRpcValue());
+                Object[] array = new Object[numElements];
+                for (int i = 0; i < numElements; i++) {
+                    array[i] = readRpcValue();
                 }
-                return array.toArray();
+                return array;
             case 0x101:
                 // Struct
                 numElements = readInt();
@@ -231,34 +307,49 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
                 return struct;
 
             default:
-                for (int i = 0; i < binRpcData.length; i++) {
-                    logger.info("{} {}", Integer.toHexString(binRpcData[i]), (char) binRpcData[i]);
-                }
+                logger.debug("Unknown data type {} at position {} in BIN-RPC message with length {}", type,
+                        frame.position() - 4, frame.limit());
                 throw new IOException("Unknown data type " + type);
         }
     }
 
     private void setInt(int position, int value) {
-        int temp = offset;
-        offset = position;
-        addInt(value);
-        offset = temp;
+        binRpcData[position] = (byte) (value >> 24);
+        binRpcData[position + 1] = (byte) (value >> 16);
+        binRpcData[position + 2] = (byte) (value >> 8);
+        binRpcData[position + 3] = (byte) value;
     }
 
-    private void addByte(byte b) {
-        if (offset == binRpcData.length) {
-            byte newdata[] = new byte[binRpcData.length * 2];
-            System.arraycopy(binRpcData, 0, newdata, 0, binRpcData.length);
-            binRpcData = newdata;
+    private void ensureCapacity(int additional) {
+        if (offset + additional > binRpcData.length) {
+            binRpcData = Arrays.copyOf(binRpcData, Math.max(binRpcData.length * 2, offset + additional));
         }
+    }
+
+    private void addByte(byte b) {
+        ensureCapacity(1);
         binRpcData[offset++] = b;
     }
 
     private void addInt(int value) {
-        addByte((byte) (value >> 24));
-        addByte((byte) (value >> 16));
-        addByte((byte) (value >> 8));
-        addByte((byte) (value));
+        ensureCapacity(4);
+        setInt(offset, value);
+        offset += 4;
+    }
+
+    /**
+     * Rounds the value to six decimal places like {@link BigDecimal} with {@link RoundingMode#HALF_DOWN}. The
+     * BigDecimal is only created for large values and for values which may be exactly in the middle of two results.
+     */
+    private static double round(double value) {
+        if (Math.abs(value) < MAX_SCALED_VALUE) {
+            double scaled = value * DECIMAL_SCALE;
+            double fraction = Math.abs(scaled - (long) scaled);
+            if (Math.abs(fraction - 0.5) > 4 * Math.ulp(scaled)) {
+                return Math.round(scaled) / DECIMAL_SCALE;
+            }
+        }
+        return new BigDecimal(value).setScale(6, RoundingMode.HALF_DOWN).doubleValue();
     }
 
     private void addDouble(double value) {
@@ -283,16 +374,15 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
         addInt(exp);
     }
 
+    /**
+     * Adds the length prefixed bytes of the string in the message encoding.
+     */
     private void addString(String string) {
-        byte sd[];
-        try {
-            sd = string.getBytes(encoding);
-        } catch (UnsupportedEncodingException use) {
-            sd = string.getBytes();
-        }
-        for (byte ch : sd) {
-            addByte(ch);
-        }
+        byte sd[] = string.getBytes(charset);
+        addInt(sd.length);
+        ensureCapacity(sd.length);
+        System.arraycopy(sd, 0, binRpcData, offset, sd.length);
+        offset += sd.length;
     }
 
     private void addList(Collection<?> collection) {
@@ -304,9 +394,7 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     private void addObject(Object object) {
         if (object.getClass() == String.class) {
             addInt(3);
-            String string = (String) object;
-            addInt(string.length());
-            addString(string);
+            addString((String) object);
         } else if (object.getClass() == Boolean.class) {
             addInt(2);
             addByte(((Boolean) object).booleanValue() ? (byte) 1 : (byte) 0);
@@ -318,8 +406,7 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
             addDouble(((Double) object).doubleValue());
         } else if (object.getClass() == Float.class) {
             addInt(4);
-            BigDecimal bd = new BigDecimal((Float) object);
-            addDouble(bd.setScale(6, RoundingMode.HALF_DOWN).doubleValue());
+            addDouble(round(((Float) object).doubleValue()));
         } else if (object.getClass() == BigDecimal.class) {
             addInt(4);
             addDouble(((BigDecimal) object).setScale(6, RoundingMode.HALF_DOWN).doubleValue());
@@ -328,7 +415,7 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
             addDouble(((BigInteger) object).doubleValue());
         } else if (object.getClass() == Date.class) {
             addInt(5);
-            addInt((int) ((Date) object).getTime() / 1000);
+            addInt((int) (((Date) object).getTime() / 1000));
         } else if (object instanceof List<?>) {
             Collection<?> list = (Collection<?>) object;
             addInt(0x100);
@@ -339,10 +426,8 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
             addInt(0x101);
             addInt(map.size());
             for (Map.Entry<?, ?> entry : map.entrySet()) {
-                String key = (String) entry.getKey();
-                addInt(key.length());
-                addString(key);
-                addList(Collections.singleton(entry.getValue()));
+                addString((String) entry.getKey());
+                addObject(entry.getValue());
             }
         }
     }
@@ -354,7 +439,9 @@ public class BinRpcMessage implements RpcRequest<byte[]>, RpcResponse {
     @Override
     public String toString() {
         try {
-            trimBinRpcData();
+            if (binRpcData != null) {
+                frame = ByteBuffer.wrap(binRpcData, 0, offset);
+            }
             generateResponseData();
             return RpcUtils.dumpRpcMessage(methodName, messageData);
         } catch (Exception e) {
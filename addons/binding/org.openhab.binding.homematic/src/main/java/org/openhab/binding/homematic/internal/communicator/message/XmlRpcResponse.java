@@ -14,38 +14,58 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
-import org.xml.sax.Attributes;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
- * Decodes a XML-RPC message from the Homematic server.
+ * Decodes a XML-RPC message from the Homematic server. The message is pulled from the stream with StAX and every value
+ * is decoded directly into its final object, without collecting intermediate lists or copying the payload.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class XmlRpcResponse implements RpcResponse {
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
     private String methodName;
     private Object[] responseData;
 
     /**
      * Decodes a XML-RPC message from the given InputStream.
      */
-    public XmlRpcResponse(InputStream is, String encoding)
-            throws SAXException, ParserConfigurationException, IOException {
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser saxParser = factory.newSAXParser();
-        InputSource inputSource = new InputSource(is);
-        inputSource.setEncoding(encoding);
-        saxParser.parse(inputSource, new XmlRpcHandler());
+    public XmlRpcResponse(InputStream is, String encoding) throws XMLStreamException, IOException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(is, encoding);
+        try {
+            List<Object> data = new ArrayList<Object>();
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    String tag = getTag(reader);
+                    switch (tag) {
+                        case "methodname":
+                            methodName = reader.getElementText();
+                            break;
+                        case "value":
+                            data.add(readValue(reader));
+                            break;
+                        case "params":
+                        case "param":
+                        case "methodcall":
+                        case "methodresponse":
+                        case "fault":
+                            break;
+                        default:
+                            throw new XMLStreamException("Unknown XML-RPC tag: " + tag, reader.getLocation());
+                    }
+                }
+            }
+            responseData = data.toArray();
+        } finally {
+            reader.close();
+        }
     }
 
     @Override
@@ -64,109 +84,123 @@ public class XmlRpcResponse implements RpcResponse {
     }
 
     /**
-     * SAX parser implementation to decode XML-RPC.
-     *
-     * @author Gerhard Riegler
-     * @since 1.9.0
+     * Reads a value, the reader must be positioned on the start tag of the value. A value without a type tag is a
+     * string.
      */
-    private class XmlRpcHandler extends DefaultHandler {
-        private List<Object> result = new ArrayList<Object>();
-        private LinkedList<List<Object>> currentDataObject = new LinkedList<List<Object>>();
-        private StringBuilder tagValue;
-        private boolean isValueTag;
-
-        @Override
-        public void startDocument() throws SAXException {
-            currentDataObject.addLast(new ArrayList<Object>());
+    private Object readValue(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = null;
+        Object value = null;
+        boolean typed = false;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                value = readTypedValue(reader, getTag(reader));
+                typed = true;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (!typed) {
+                    if (text == null) {
+                        text = new StringBuilder();
+                    }
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (typed) {
+                    return value;
+                }
+                return text == null ? "" : text.toString();
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new XMLStreamException("Unexpected end of XML-RPC value", reader.getLocation());
+            }
         }
+    }
 
-        @Override
-        public void endDocument() throws SAXException {
-            result.addAll(currentDataObject.removeLast());
-            responseData = result.toArray();
+    /**
+     * Reads the content of a type tag, the reader is positioned on the end tag afterwards.
+     */
+    private Object readTypedValue(XMLStreamReader reader, String tag) throws XMLStreamException {
+        switch (tag) {
+            case "boolean":
+                return "1".equals(reader.getElementText()) ? Boolean.TRUE : Boolean.FALSE;
+            case "int":
+            case "i4":
+                return Integer.valueOf(reader.getElementText());
+            case "double":
+                return Double.valueOf(reader.getElementText());
+            case "string":
+                return reader.getElementText();
+            case "base64":
+                return Base64.getDecoder().decode(reader.getElementText());
+            case "datetime.iso8601":
+                try {
+                    return XmlRpcRequest.xmlRpcDateFormat.parse(reader.getElementText());
+                } catch (ParseException ex) {
+                    throw new XMLStreamException(ex.getMessage(), reader.getLocation(), ex);
+                }
+            case "array":
+                return readArray(reader);
+            case "struct":
+                return readStruct(reader);
+            default:
+                throw new XMLStreamException("Unknown XML-RPC tag: " + tag, reader.getLocation());
         }
+    }
 
-        @Override
-        public void startElement(String uri, String localName, String qName, Attributes attributes)
-                throws SAXException {
-            String tag = qName.toLowerCase();
-            if (tag.equals("array") || tag.equals("struct")) {
-                currentDataObject.addLast(new ArrayList<Object>());
+    /**
+     * Reads all values of an array until the end tag of the array.
+     */
+    private Object[] readArray(XMLStreamReader reader) throws XMLStreamException {
+        List<Object> values = new ArrayList<Object>();
+        while (true) {
+            int event = reader.nextTag();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("array".equals(getTag(reader))) {
+                    return values.toArray();
+                }
+            } else {
+                String tag = getTag(reader);
+                if ("value".equals(tag)) {
+                    values.add(readValue(reader));
+                } else if (!"data".equals(tag)) {
+                    throw new XMLStreamException("Unknown XML-RPC tag: " + tag, reader.getLocation());
+                }
             }
-            isValueTag = tag.equals("value");
-            tagValue = new StringBuilder();
         }
+    }
 
-        @Override
-        public void endElement(String uri, String localName, String qName) throws SAXException {
-            String currentTag = qName.toLowerCase();
-            String currentValue = tagValue.toString();
-            List<Object> data = currentDataObject.peekLast();
-
-            switch (currentTag) {
-                case "boolean":
-                    data.add("1".equals(currentValue) ? Boolean.TRUE : Boolean.FALSE);
-                    break;
-                case "int":
-                case "i4":
-                    data.add(new Integer(currentValue));
-                    break;
-                case "double":
-                    data.add(new Double(currentValue));
-                    break;
-                case "string":
-                case "name":
-                    data.add(currentValue);
-                    break;
-                case "value":
-                    if (isValueTag) {
-                        data.add(currentValue);
-                        isValueTag = false;
-                    }
-                    break;
-                case "array":
-                    List<Object> arrayData = currentDataObject.removeLast();
-                    currentDataObject.peekLast().add(arrayData.toArray());
-                    break;
-                case "struct":
-                    List<Object> mapData = currentDataObject.removeLast();
-                    Map<Object, Object> resultMap = new HashMap<Object, Object>();
-
-                    for (int i = 0; i < mapData.size(); i += 2) {
-                        resultMap.put(mapData.get(i), mapData.get(i + 1));
-                    }
-                    currentDataObject.peekLast().add(resultMap);
-                    break;
-                case "base64":
-                    data.add(Base64.getDecoder().decode(currentValue));
-                    break;
-                case "datetime.iso8601":
-                    try {
-                        data.add(XmlRpcRequest.xmlRpcDateFormat.parse(currentValue));
-                    } catch (ParseException ex) {
-                        throw new SAXException(ex.getMessage(), ex);
-                    }
-                    break;
-                case "methodname":
-                    methodName = currentValue;
-                    break;
-                case "params":
-                case "param":
-                case "methodcall":
-                case "methodresponse":
-                case "member":
-                case "data":
-                case "fault":
-                    break;
-                default:
-                    throw new SAXException("Unknown XML-RPC tag: " + currentTag);
+    /**
+     * Reads all members of a struct until the end tag of the struct.
+     */
+    private Map<String, Object> readStruct(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        String name = null;
+        while (true) {
+            int event = reader.nextTag();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("struct".equals(getTag(reader))) {
+                    return values;
+                }
+            } else {
+                String tag = getTag(reader);
+                if ("name".equals(tag)) {
+                    name = reader.getElementText();
+                } else if ("value".equals(tag)) {
+                    values.put(name, readValue(reader));
+                } else if (!"member".equals(tag)) {
+                    throw new XMLStreamException("Unknown XML-RPC tag: " + tag, reader.getLocation());
+                }
             }
         }
+    }
 
-        @Override
-        public void characters(char[] ch, int start, int length) throws SAXException {
-            tagValue.append(new String(ch, start, length));
-        }
+    private static String getTag(XMLStreamReader reader) {
+        return reader.getLocalName().toLowerCase();
+    }
 
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
     }
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.openhab.binding.homematic.internal.model.HmChannel;
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmParamsetType;
+import org.openhab.binding.homematic.internal.model.TclScriptDataEntry;
+import org.openhab.binding.homematic.internal.model.TclScriptDataList;
+
+/**
+ * Parses a TclRega script result containing the values of already loaded variables and returns the datapoints with a
+ * changed value. Unknown variables are skipped, they are added with the next full reload.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ */
+public class CcuVariableValuesParser extends CommonRpcParser<TclScriptDataList, List<HmDatapoint>> {
+    private HmChannel channel;
+
+    public CcuVariableValuesParser(HmChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public List<HmDatapoint> parse(TclScriptDataList resultList) throws IOException {
+        List<HmDatapoint> changedDatapoints = new ArrayList<HmDatapoint>();
+        if (resultList.getEntries() != null) {
+            for (TclScriptDataEntry entry : resultList.getEntries()) {
+                HmDatapoint dp = channel.getDatapoint(HmParamsetType.VALUES, entry.name);
+                if (dp != null) {
+                    Object value = convertToType(entry.value);
+                    if (!Objects.equals(dp.getValue(), value)) {
+                        dp.setValue(value);
+                        changedDatapoints.add(dp);
+                    }
+                }
+            }
+        }
+        return changedDatapoints;
+    }
+}
@@ -45,7 +45,15 @@ public class BinRpcNetworkService implements Runnable {
         serverSocket.setReuseAddress(true);
         serverSocket.bind(new InetSocketAddress(config.getBinCallbackPort()));
 
-        this.rpcResponseHandler = new RpcResponseHandler<byte[]>(listener) {
+        this.rpcResponseHandler = createRpcResponseHandler(listener, config);
+    }
+
+    /**
+     * Creates the handler which answers the method calls of the Homematic gateway with BIN-RPC messages.
+     */
+    static RpcResponseHandler<byte[]> createRpcResponseHandler(RpcEventListener listener,
+            final HomematicConfig config) {
+        return new RpcResponseHandler<byte[]>(listener) {
 
             @Override
             protected byte[] getEmptyStringResult() {
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.communicator.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.openhab.binding.homematic.internal.common.HomematicConfig;
+import org.openhab.binding.homematic.internal.communicator.message.BinRpcMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking BIN-RPC server, all connections from the Homematic gateway are handled by a single selector thread.
+ * Only complete BIN-RPC frames are handed over to the worker pool, so no pooled thread waits for a slow connection.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ */
+public class BinRpcNioServer implements RpcServer, Runnable {
+    private final Logger logger = LoggerFactory.getLogger(BinRpcNioServer.class);
+
+    private static final String RPC_POOL_NAME = "homematicRpc";
+
+    private HomematicConfig config;
+    private RpcResponseHandler<byte[]> rpcResponseHandler;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private Queue<Connection> pendingResponses = new ConcurrentLinkedQueue<Connection>();
+    private volatile boolean running;
+
+    public BinRpcNioServer(RpcEventListener listener, HomematicConfig config) {
+        this.config = config;
+        this.rpcResponseHandler = BinRpcNetworkService.createRpcResponseHandler(listener, config);
+    }
+
+    @Override
+    public void start() throws IOException {
+        logger.debug("Initializing non-blocking BIN-RPC server at port {}", config.getBinCallbackPort());
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.bind(new InetSocketAddress(config.getBinCallbackPort()));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this);
+        selectorThread.setName("HomematicRpcServer");
+        selectorThread.start();
+    }
+
+    @Override
+    public void shutdown() {
+        if (selectorThread != null) {
+            logger.debug("Stopping non-blocking BIN-RPC server");
+            running = false;
+            selector.wakeup();
+            try {
+                selectorThread.join(config.getTimeout() * 1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            selectorThread = null;
+        }
+    }
+
+    /**
+     * Selector loop, accepts connections, reassembles the frames and writes the responses.
+     */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                registerPendingResponses();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            read(key);
+                        } else if (key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (EOFException eof) {
+                        close(key);
+                    } catch (IOException ex) {
+                        logger.debug("BIN-RPC connection failure: {}", ex.getMessage());
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("Non-blocking BIN-RPC server stopped: {}", ex.getMessage(), ex);
+        } finally {
+            closeSelector();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+        }
+    }
+
+    /**
+     * Reads the available bytes, if the frame is complete it is dispatched to the worker pool.
+     */
+    private void read(SelectionKey key) throws IOException {
+        final Connection connection = (Connection) key.attachment();
+        if (connection.read()) {
+            key.interestOps(0);
+            ThreadPoolManager.getPool(RPC_POOL_NAME).execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    handleFrame(connection);
+                }
+            });
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        connection.channel.write(connection.response);
+        if (!connection.response.hasRemaining()) {
+            close(key);
+        }
+    }
+
+    /**
+     * Decodes the frame and handles the method call, runs in the worker pool.
+     */
+    private void handleFrame(Connection connection) {
+        try {
+            BinRpcMessage message = new BinRpcMessage(ByteBuffer.wrap(connection.frame), true, config.getEncoding());
+            logger.trace("Event BinRpcMessage: {}", message);
+            byte[] returnValue = rpcResponseHandler.handleMethodCall(message.getMethodName(),
+                    message.getResponseData());
+            connection.response = returnValue == null ? null : ByteBuffer.wrap(returnValue);
+        } catch (Exception e) {
+            logger.error("{}", e.getMessage(), e);
+            connection.response = null;
+        }
+        pendingResponses.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Switches the connections with a finished method call to write mode.
+     */
+    private void registerPendingResponses() {
+        Connection connection;
+        while ((connection = pendingResponses.poll()) != null) {
+            SelectionKey key = connection.channel.keyFor(selector);
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+            if (connection.response == null) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    /**
+     * Holds the state of a single connection from the Homematic gateway.
+     */
+    private static class Connection {
+        private SocketChannel channel;
+        private ByteBuffer header = ByteBuffer.allocate(BinRpcMessage.HEADER_LENGTH);
+        private ByteBuffer body;
+        private byte[] frame;
+        private volatile ByteBuffer response;
+
+        public Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads from the channel, returns true if a complete frame has been received.
+         */
+        public boolean read() throws IOException {
+            if (body == null) {
+                if (channel.read(header) < 0) {
+                    throw new EOFException();
+                }
+                if (header.hasRemaining()) {
+                    return false;
+                }
+                int frameLength = BinRpcMessage.getFrameLength(header.array(), 0);
+                if (frameLength < BinRpcMessage.HEADER_LENGTH) {
+                    throw new IOException("No valid BIN-RPC header received");
+                }
+                frame = Arrays.copyOf(header.array(), frameLength);
+                body = ByteBuffer.wrap(frame, BinRpcMessage.HEADER_LENGTH, frameLength - BinRpcMessage.HEADER_LENGTH);
+            }
+            if (body.hasRemaining() && channel.read(body) < 0) {
+                throw new EOFException();
+            }
+            return !body.hasRemaining();
+        }
+    }
+}
@@ -10,6 +10,7 @@ package org.openhab.binding.homematic.internal.converter;
 
 import static org.openhab.binding.homematic.HomematicBindingConstants.*;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,49 +21,31 @@ import org.openhab.binding.homematic.internal.converter.type.PercentTypeConverte
 import org.openhab.binding.homematic.internal.converter.type.StringTypeConverter;
 
 /**
- * A factory for creating converters based on the itemType.
+ * A factory for creating converters based on the itemType. The converters are stateless, so one instance per itemType
+ * is created upfront and shared by all threads.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class ConverterFactory {
-    private static Map<String, TypeConverter<?>> converterCache = new HashMap<String, TypeConverter<?>>();
+    private static final Map<String, TypeConverter<?>> converters;
+
+    static {
+        Map<String, TypeConverter<?>> convertersByItemType = new HashMap<String, TypeConverter<?>>();
+        PercentTypeConverter percentTypeConverter = new PercentTypeConverter();
+        convertersByItemType.put(ITEM_TYPE_SWITCH, new OnOffTypeConverter());
+        convertersByItemType.put(ITEM_TYPE_ROLLERSHUTTER, percentTypeConverter);
+        convertersByItemType.put(ITEM_TYPE_DIMMER, percentTypeConverter);
+        convertersByItemType.put(ITEM_TYPE_CONTACT, new OpenClosedTypeConverter());
+        convertersByItemType.put(ITEM_TYPE_STRING, new StringTypeConverter());
+        convertersByItemType.put(ITEM_TYPE_NUMBER, new DecimalTypeConverter());
+        converters = Collections.unmodifiableMap(convertersByItemType);
+    }
 
     /**
      * Returns the converter for a itemType.
      */
     public static TypeConverter<?> createConverter(String itemType) throws ConverterException {
-        Class<? extends TypeConverter<?>> converterClass = null;
-        switch (itemType) {
-            case ITEM_TYPE_SWITCH:
-                converterClass = OnOffTypeConverter.class;
-                break;
-            case ITEM_TYPE_ROLLERSHUTTER:
-            case ITEM_TYPE_DIMMER:
-                converterClass = PercentTypeConverter.class;
-                break;
-            case ITEM_TYPE_CONTACT:
-                converterClass = OpenClosedTypeConverter.class;
-                break;
-            case ITEM_TYPE_STRING:
-                converterClass = StringTypeConverter.class;
-                break;
-            case ITEM_TYPE_NUMBER:
-                converterClass = DecimalTypeConverter.class;
-                break;
-        }
-
-        TypeConverter<?> converter = null;
-        if (converterClass != null) {
-            converter = converterCache.get(converterClass.getName());
-            if (converter == null) {
-                try {
-                    converter = converterClass.newInstance();
-                    converterCache.put(converterClass.getName(), converter);
-                } catch (Exception e) {
-                    // ignore
-                }
-            }
-        }
+        TypeConverter<?> converter = itemType == null ? null : converters.get(itemType);
         if (converter == null) {
             throw new ConverterException("Can't find a converter for type '" + itemType + "'");
         }
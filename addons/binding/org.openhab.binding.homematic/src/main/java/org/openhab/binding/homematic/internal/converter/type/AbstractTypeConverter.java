@@ -36,6 +36,8 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractTypeConverter<T extends State> implements TypeConverter<T> {
     private final Logger logger = LoggerFactory.getLogger(AbstractTypeConverter.class);
 
+    private static final double MAX_SCALED_VALUE = 1e9;
+
     /**
      * Defines all devices where the state datapoint must be inverted.
      */
@@ -65,15 +67,60 @@ public abstract class AbstractTypeConverter<T extends State> implements TypeConv
     }
 
     /**
-     * Rounds a double value.
+     * Rounds a double value to two decimal places if it has no more than two, otherwise to six decimal places.
+     * Values with an exact half in the seventh decimal place are rounded on their decimal representation, like
+     * {@link BigDecimal} does.
      */
-    protected BigDecimal round(Double number) {
-        BigDecimal bd = new BigDecimal(number == null ? "0" : number.toString());
+    protected BigDecimal round(double number) {
+        if (Math.abs(number) < MAX_SCALED_VALUE) {
+            long unscaled = Math.round(number * 100);
+            if (unscaled / 100.0 == number) {
+                return BigDecimal.valueOf(unscaled, 2);
+            }
+            double scaled = number * 1000000;
+            if (!isNearHalf(scaled)) {
+                return BigDecimal.valueOf(roundHalfUp(scaled), 6);
+            }
+        }
+        BigDecimal bd = new BigDecimal(Double.toString(number));
         String stringBd = bd.toPlainString();
         int scale = stringBd.length() - (stringBd.lastIndexOf('.') + 1);
         return bd.setScale(scale > 2 ? 6 : 2, RoundingMode.HALF_UP);
     }
 
+    /**
+     * Rounds a double value like {@link #round(double)} without creating a BigDecimal.
+     */
+    protected double roundToDouble(double number) {
+        if (Math.abs(number) < MAX_SCALED_VALUE) {
+            long unscaled = Math.round(number * 100);
+            if (unscaled / 100.0 == number) {
+                return number;
+            }
+            double scaled = number * 1000000;
+            if (!isNearHalf(scaled)) {
+                return roundHalfUp(scaled) / 1000000.0;
+            }
+        }
+        return round(number).doubleValue();
+    }
+
+    /**
+     * Returns true if the fraction of a scaled value is that close to one half, that the binary representation
+     * and the scaling may round it differently than its decimal representation.
+     */
+    private static boolean isNearHalf(double scaled) {
+        double fraction = Math.abs(scaled - (long) scaled);
+        return Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled);
+    }
+
+    /**
+     * Rounds half away from zero, like {@link RoundingMode#HALF_UP}.
+     */
+    private static long roundHalfUp(double number) {
+        return number < 0 ? -Math.round(-number) : Math.round(number);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public Object convertToBinding(Type type, HmDatapoint dp) throws ConverterException {
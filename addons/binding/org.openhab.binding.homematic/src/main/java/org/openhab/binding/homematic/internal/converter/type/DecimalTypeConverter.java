@@ -8,8 +8,6 @@
  */
 package org.openhab.binding.homematic.internal.converter.type;
 
-import java.math.BigDecimal;
-
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.types.Type;
 import org.openhab.binding.homematic.internal.converter.ConverterException;
@@ -31,7 +29,7 @@ public class DecimalTypeConverter extends AbstractTypeConverter<DecimalType> {
         if (dp.isIntegerType()) {
             return type.intValue();
         }
-        return round(type.doubleValue()).doubleValue();
+        return roundToDouble(type.doubleValue());
     }
 
     @Override
@@ -41,9 +39,9 @@ public class DecimalTypeConverter extends AbstractTypeConverter<DecimalType> {
 
     @Override
     protected DecimalType fromBinding(HmDatapoint dp) throws ConverterException {
-        Number number = ((Number) dp.getValue()).doubleValue();
+        Number number = (Number) dp.getValue();
         if (dp.isIntegerType()) {
-            return new DecimalType(new BigDecimal(number.intValue()));
+            return new DecimalType(number.intValue());
         }
         return new DecimalType(round(number.doubleValue()));
     }
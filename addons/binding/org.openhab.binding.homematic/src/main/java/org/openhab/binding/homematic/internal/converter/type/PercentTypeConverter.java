@@ -61,7 +61,7 @@ public class PercentTypeConverter extends AbstractTypeConverter<PercentType> {
 
     @Override
     protected Object toBinding(PercentType type, HmDatapoint dp) throws ConverterException {
-        Double number = (type.doubleValue() / 100) * dp.getMaxValue().doubleValue();
+        double number = (type.doubleValue() / 100) * dp.getMaxValue().doubleValue();
 
         if (MetadataUtils.isRollerShutter(dp)) {
             number = dp.getMaxValue().doubleValue() - number;
@@ -71,9 +71,9 @@ public class PercentTypeConverter extends AbstractTypeConverter<PercentType> {
             number = number < 0.0 ? 0.0 : 100.0;
         }
         if (dp.isIntegerType()) {
-            return number.intValue();
+            return (int) number;
         }
-        return round(number).doubleValue();
+        return roundToDouble(number);
     }
 
     @Override
@@ -84,7 +84,7 @@ public class PercentTypeConverter extends AbstractTypeConverter<PercentType> {
 
     @Override
     protected PercentType fromBinding(HmDatapoint dp) throws ConverterException {
-        Double number = ((Number) dp.getValue()).doubleValue();
+        double number = ((Number) dp.getValue()).doubleValue();
         int percent = (int) ((100 / dp.getMaxValue().doubleValue()) * number);
 
         if (MetadataUtils.isRollerShutter(dp)) {
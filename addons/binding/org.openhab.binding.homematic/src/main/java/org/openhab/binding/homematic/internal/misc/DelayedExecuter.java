@@ -9,24 +9,31 @@
 package org.openhab.binding.homematic.internal.misc;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.openhab.binding.homematic.internal.model.HmDatapointInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Executes a callback method either immediately or after a given delay for a datapoint.
+ * Executes a callback method either immediately or after a given delay for a datapoint. All delayed callbacks of all
+ * gateways share one scheduled pool, a new delayed callback for a datapoint replaces the pending one. The scheduled
+ * pool is only used for timing, the callbacks are executed on the regular homematic pool, because they may block on
+ * RPC calls.
  *
  * @author Gerhard Riegler - Initial contribution
  */
 public class DelayedExecuter {
     private final Logger logger = LoggerFactory.getLogger(DelayedExecuter.class);
 
-    private Map<HmDatapointInfo, Timer> delayedEvents = new HashMap<HmDatapointInfo, Timer>();
+    private static final String DELAYED_POOL_NAME = "homematicDelayed";
+    private static final String POOL_NAME = "homematic";
+
+    private Map<HmDatapointInfo, DelayedTask> delayedEvents = new ConcurrentHashMap<HmDatapointInfo, DelayedTask>();
 
     /**
      * Executes a callback method either immediately or after a given delay.
@@ -34,29 +41,15 @@ public class DelayedExecuter {
     public void start(final HmDatapointInfo dpInfo, final double delay, final DelayedExecuterCallback callback)
             throws IOException, HomematicClientException {
         if (delay > 0.0) {
-            synchronized (DelayedExecuter.class) {
-                logger.debug("Delaying event for {} seconds: '{}'", delay, dpInfo);
-
-                Timer timer = delayedEvents.get(dpInfo);
-                if (timer != null) {
-                    timer.cancel();
-                }
-
-                timer = new Timer();
-                delayedEvents.put(dpInfo, timer);
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-                        logger.debug("Executing delayed event for '{}'", dpInfo);
-                        delayedEvents.remove(dpInfo);
-                        try {
-                            callback.execute();
-                        } catch (Exception ex) {
-                            logger.error("{}", ex.getMessage(), ex);
-                        }
-                    }
-                }, (long) (delay * 1000));
+            logger.debug("Delaying event for {} seconds: '{}'", delay, dpInfo);
+
+            DelayedTask task = new DelayedTask(dpInfo, callback);
+            DelayedTask previousTask = delayedEvents.put(dpInfo, task);
+            if (previousTask != null) {
+                previousTask.cancel();
             }
+            task.future = ThreadPoolManager.getScheduledPool(DELAYED_POOL_NAME).schedule(task, (long) (delay * 1000),
+                    TimeUnit.MILLISECONDS);
         } else {
             callback.execute();
         }
@@ -66,12 +59,61 @@ public class DelayedExecuter {
      * Stops all delayed events.
      */
     public void stop() {
-        for (Timer timer : delayedEvents.values()) {
-            timer.cancel();
+        for (DelayedTask task : delayedEvents.values()) {
+            task.cancel();
         }
         delayedEvents.clear();
     }
 
+    /**
+     * A pending callback for a datapoint.
+     */
+    private class DelayedTask implements Runnable {
+        private HmDatapointInfo dpInfo;
+        private DelayedExecuterCallback callback;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        public DelayedTask(HmDatapointInfo dpInfo, DelayedExecuterCallback callback) {
+            this.dpInfo = dpInfo;
+            this.callback = callback;
+        }
+
+        /**
+         * Cancels the callback, it is not executed even if the scheduler already picked it up.
+         */
+        public void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> scheduledFuture = future;
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!cancelled) {
+                ThreadPoolManager.getPool(POOL_NAME).execute(this::execute);
+            }
+        }
+
+        /**
+         * Executes the callback, if it has not been replaced in the meantime.
+         */
+        private void execute() {
+            delayedEvents.remove(dpInfo, this);
+            if (cancelled) {
+                return;
+            }
+            logger.debug("Executing delayed event for '{}'", dpInfo);
+            try {
+                callback.execute();
+            } catch (Exception ex) {
+                logger.error("{}", ex.getMessage(), ex);
+            }
+        }
+    }
+
     /**
      * Callback interface for the {@link DelayedExecuter}.
      *
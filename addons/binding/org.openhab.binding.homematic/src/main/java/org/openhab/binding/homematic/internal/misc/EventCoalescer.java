@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.homematic.internal.misc;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.binding.homematic.internal.model.HmDatapoint;
+import org.openhab.binding.homematic.internal.model.HmDatapointInfo;
+
+/**
+ * Drops events with an unchanged value, if the last event of the datapoint has been forwarded within the coalescing
+ * window. The index keeps one entry per datapoint, the check of an event does not allocate after the first event.
+ *
+ * @author Gerhard Riegler - Initial contribution
+ */
+public class EventCoalescer {
+    private Map<HmDatapointInfo, ForwardInfo> forwardInfos = new ConcurrentHashMap<HmDatapointInfo, ForwardInfo>();
+    private AtomicLong forwarded = new AtomicLong();
+    private AtomicLong suppressed = new AtomicLong();
+
+    /**
+     * Returns true, if the event should be forwarded. Press datapoints are always forwarded, because each event is a
+     * new key press even if the value is unchanged.
+     */
+    public boolean accept(HmDatapointInfo dpInfo, HmDatapoint dp, Object newValue, double window) {
+        if (window <= 0.0 || dp.isPressDatapoint() || dp.isActionType()) {
+            forwarded.incrementAndGet();
+            return true;
+        }
+        ForwardInfo forwardInfo = forwardInfos.computeIfAbsent(dpInfo, info -> new ForwardInfo());
+        long now = System.currentTimeMillis();
+        if (Objects.equals(dp.getValue(), newValue) && now - forwardInfo.timestamp < (long) (window * 1000)) {
+            suppressed.incrementAndGet();
+            return false;
+        }
+        forwardInfo.timestamp = now;
+        forwarded.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Counts an event which has been suppressed outside of the coalescer, e.g. an echo event.
+     */
+    public void suppressed() {
+        suppressed.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of forwarded events.
+     */
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    /**
+     * Returns the number of suppressed events.
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * Clears the index and the counters.
+     */
+    public void clear() {
+        forwardInfos.clear();
+        forwarded.set(0);
+        suppressed.set(0);
+    }
+
+    /**
+     * The time of the last forwarded event of a datapoint.
+     */
+    private static class ForwardInfo {
+        private volatile long timestamp;
+    }
+}
@@ -19,6 +19,7 @@ import org.apache.commons.lang.builder.ToStringStyle;
 public class HmDatapointConfig {
     private Double delay;
     private Double receiveDelay;
+    private Double coalesceWindow;
 
     /**
      * Returns the delay in seconds for sending the datapoint.
@@ -48,10 +49,24 @@ public class HmDatapointConfig {
         this.receiveDelay = receiveDelay;
     }
 
+    /**
+     * Returns the window in seconds in which received events with an unchanged value are dropped.
+     */
+    public double getCoalesceWindow() {
+        return coalesceWindow == null ? 0.0 : coalesceWindow;
+    }
+
+    /**
+     * Sets the window in seconds in which received events with an unchanged value are dropped.
+     */
+    public void setCoalesceWindow(Double coalesceWindow) {
+        this.coalesceWindow = coalesceWindow;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE).append("delay", delay)
-                .append("receiveDelay", receiveDelay).toString();
+                .append("receiveDelay", receiveDelay).append("coalesceWindow", coalesceWindow).toString();
     }
 
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.loxone.internal.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Cache of the Miniserver's configuration file (LoxAPP3.json).
+ * <p>
+ * The last received configuration is kept in memory and on disk, together with its last modification date. When the
+ * Miniserver reports the same modification date on the next connection, the configuration does not have to be
+ * downloaded and parsed again. After a restart, the file on disk is parsed with a streaming reader.
+ *
+ * @author Pawel Pieczul - initial contribution
+ *
+ */
+class LxConfigCache {
+    private static final String CACHE_FOLDER = ConfigConstants.getUserDataFolder() + File.separator + "loxone";
+
+    private final File cacheFile;
+    private final Gson gson = new Gson();
+    private final Logger logger = LoggerFactory.getLogger(LxConfigCache.class);
+    private LxJsonApp3 config;
+    private boolean loaded;
+
+    /**
+     * Create a cache for the configuration of a Miniserver.
+     *
+     * @param host
+     *            host address of the Miniserver
+     * @param port
+     *            web service port of the Miniserver
+     */
+    LxConfigCache(InetAddress host, int port) {
+        String name = host.getHostAddress().replaceAll("[^a-zA-Z0-9.-]", "_") + "_" + port;
+        cacheFile = new File(CACHE_FOLDER, "LoxAPP3_" + name + ".json");
+    }
+
+    /**
+     * Get the cached configuration, if it has the provided modification date.
+     *
+     * @param lastModified
+     *            last modification date of the configuration reported by the Miniserver
+     * @return
+     *         cached configuration or null if there is none with this modification date
+     */
+    synchronized LxJsonApp3 get(String lastModified) {
+        if (lastModified == null) {
+            return null;
+        }
+        if (config == null && !loaded) {
+            loaded = true;
+            config = load();
+        }
+        if (config != null && lastModified.equals(config.lastModified)) {
+            return config;
+        }
+        return null;
+    }
+
+    /**
+     * Store a new configuration received from the Miniserver in memory and on disk.
+     *
+     * @param json
+     *            configuration as received from the Miniserver
+     * @param config
+     *            parsed configuration
+     */
+    synchronized void put(String json, LxJsonApp3 config) {
+        this.config = config;
+        loaded = true;
+        if (config.lastModified == null) {
+            return;
+        }
+        File folder = cacheFile.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            logger.warn("Can't create folder '{}' for Loxone configuration cache", folder);
+            return;
+        }
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(cacheFile), StandardCharsets.UTF_8))) {
+            writer.write(json);
+            logger.debug("Saved Loxone configuration modified {} to '{}'", config.lastModified, cacheFile);
+        } catch (IOException e) {
+            logger.warn("Can't save Loxone configuration cache '{}': {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private LxJsonApp3 load() {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try (JsonReader reader = new JsonReader(
+                new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8)))) {
+            LxJsonApp3 cached = gson.fromJson(reader, LxJsonApp3.class);
+            logger.debug("Loaded Loxone configuration modified {} from '{}'",
+                    cached != null ? cached.lastModified : null, cacheFile);
+            return cached;
+        } catch (IOException | JsonParseException e) {
+            logger.info("Can't load Loxone configuration cache '{}', discarding it: {}", cacheFile, e.getMessage());
+            return null;
+        }
+    }
+}
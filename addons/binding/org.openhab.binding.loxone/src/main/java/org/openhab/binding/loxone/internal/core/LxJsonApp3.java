@@ -20,6 +20,7 @@ import com.google.gson.JsonElement;
  */
 class LxJsonApp3 {
 
+    String lastModified;
     LxJsonInfo msInfo;
     Map<String, LxJsonControl> controls;
     Map<String, LxJsonRoom> rooms;
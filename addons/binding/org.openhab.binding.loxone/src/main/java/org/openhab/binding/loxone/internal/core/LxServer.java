@@ -11,14 +11,15 @@ package org.openhab.binding.loxone.internal.core;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openhab.binding.loxone.internal.core.LxServerEvent.EventType;
 import org.slf4j.Logger;
@@ -70,18 +71,21 @@ public class LxServer {
     private int comErrorDelay = 30;
 
     // Data structures
-    private Set<LxUuid> uuids = new HashSet<>();
+    private Map<LxUuid, LxUuid> uuids = new HashMap<>();
     private Map<LxUuid, LxControl> controls = new HashMap<>();
     private Map<LxUuid, LxContainer> rooms = new HashMap<>();
     private Map<LxUuid, LxCategory> categories = new HashMap<>();
     private Map<LxUuid, LxControlState> states = new HashMap<>();
     private List<LxServerListener> listeners = new ArrayList<>();
+    private LxJsonApp3 currentConfig;
 
     // Services
     private boolean running = true;
     private LxWsClient socketClient;
     private Thread monitorThread;
     private BlockingQueue<LxServerEvent> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong stateUpdates = new AtomicLong();
+    private final AtomicLong controlUpdates = new AtomicLong();
 
     private Logger logger = LoggerFactory.getLogger(LxServer.class);
 
@@ -380,8 +384,11 @@ public class LxServer {
                         switch (event) {
                             case RECEIVED_CONFIG:
                                 LxJsonApp3 config = (LxJsonApp3) wsMsg.getObject();
-                                if (config != null) {
+                                if (config != null && config == currentConfig) {
+                                    logger.debug("[{}] Server configuration not modified", debugId);
+                                } else if (config != null) {
                                     updateConfig(config);
+                                    currentConfig = config;
                                     for (LxServerListener listener : listeners) {
                                         listener.onNewConfig(server);
                                     }
@@ -390,21 +397,15 @@ public class LxServer {
                                 }
                                 break;
                             case STATE_UPDATE:
-                                LxWsStateUpdateEvent update = (LxWsStateUpdateEvent) wsMsg.getObject();
-                                LxControlState state = findState(update.getUuid());
-                                if (state != null) {
-                                    state.setValue(update.getValue(), update.getText());
-                                    LxControl control = state.getControl();
-                                    if (control != null) {
-                                        logger.debug("[{}] State update {} ({}:{}) to value {}, text '{}'", debugId,
-                                                update.getUuid(), control.getName(), state.getName(), update.getValue(),
-                                                update.getText());
-                                        for (LxServerListener listener : listeners) {
-                                            listener.onControlStateUpdate(control);
-                                        }
-                                    } else {
-                                        logger.debug("[{}] State update {} ({}) of unknown control", debugId,
-                                                update.getUuid(), state.getName());
+                                // coalesce all state tables that arrived in the meantime
+                                Set<LxControl> updatedControls = new LinkedHashSet<>();
+                                for (List<LxWsStateUpdateEvent> batch : socketClient.takeStateUpdates()) {
+                                    updateStates(batch, updatedControls);
+                                }
+                                controlUpdates.addAndGet(updatedControls.size());
+                                for (LxControl control : updatedControls) {
+                                    for (LxServerListener listener : listeners) {
+                                        listener.onControlStateUpdate(control);
                                     }
                                 }
                                 break;
@@ -420,6 +421,9 @@ public class LxServer {
                                     details = (String) wsMsg.getObject();
                                 }
                                 logger.debug("[{}] Websocket goes OFFLINE, reason {} : {}.", debugId, reason, details);
+                                logger.debug("[{}] State updates: {} received, {} to controls, {} delayed, {} dropped",
+                                        debugId, getStateUpdateCount(), getControlUpdateCount(),
+                                        getStateUpdatesDelayed(), getStateUpdatesDropped());
 
                                 if (reason == LxOfflineReason.TOO_MANY_FAILED_LOGIN_ATTEMPTS) {
                                     // assume credentials are wrong, do not re-attempt connections
@@ -461,6 +465,97 @@ public class LxServer {
         }
     }
 
+    /**
+     * Applies a batch of state updates to the states of controls. A control with more than one updated state is
+     * added only once to the set of updated controls, so its listeners are notified only once with the latest values.
+     *
+     * @param updates
+     *            list of state updates
+     * @param updatedControls
+     *            set that collects controls, that have received new state values
+     */
+    private void updateStates(List<LxWsStateUpdateEvent> updates, Set<LxControl> updatedControls) {
+        stateUpdates.addAndGet(updates.size());
+        for (LxWsStateUpdateEvent update : updates) {
+            LxControlState state = findState(update.getUuid());
+            if (state != null) {
+                state.setValue(update.getValue(), update.getText());
+                LxControl control = state.getControl();
+                if (control != null) {
+                    logger.debug("[{}] State update {} ({}:{}) to value {}, text '{}'", debugId, update.getUuid(),
+                            control.getName(), state.getName(), update.getValue(), update.getText());
+                    updatedControls.add(control);
+                } else {
+                    logger.debug("[{}] State update {} ({}) of unknown control", debugId, update.getUuid(),
+                            state.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the time it took to establish the last connection to the Miniserver, until state updates were enabled.
+     *
+     * @return
+     *         connection time in milliseconds
+     */
+    public long getLastConnectTime() {
+        return socketClient.getLastConnectTime();
+    }
+
+    /**
+     * See if the last connection to the Miniserver used a cached configuration, that did not have to be downloaded.
+     *
+     * @return
+     *         true if cached configuration was used
+     */
+    public boolean isLastConfigCached() {
+        return socketClient.isLastConfigCached();
+    }
+
+    /**
+     * Get the number of state updates received from the Miniserver and applied to the states of controls.
+     *
+     * @return
+     *         number of received state updates
+     */
+    public long getStateUpdateCount() {
+        return stateUpdates.get();
+    }
+
+    /**
+     * Get the number of control updates passed to the listeners. It is lower than the number of received state
+     * updates, when updates of the same control are coalesced.
+     *
+     * @return
+     *         number of control updates
+     */
+    public long getControlUpdateCount() {
+        return controlUpdates.get();
+    }
+
+    /**
+     * Get the number of state updates, that were delayed because the server thread could not keep up with the
+     * Miniserver.
+     *
+     * @return
+     *         number of delayed state updates
+     */
+    public long getStateUpdatesDelayed() {
+        return socketClient.getStateUpdatesDelayed();
+    }
+
+    /**
+     * Get the number of state updates, that were dropped because the server thread could not keep up with the
+     * Miniserver.
+     *
+     * @return
+     *         number of dropped state updates
+     */
+    public long getStateUpdatesDropped() {
+        return socketClient.getStateUpdatesDropped();
+    }
+
     /**
      * Updates runtime configuration from parsed JSON configuration file of Loxone Miniserver (LoxApp3.json)
      *
@@ -470,7 +565,7 @@ public class LxServer {
     private void updateConfig(LxJsonApp3 config) {
         logger.trace("[{}] Updating configuration from Miniserver", debugId);
 
-        for (LxUuid id : uuids) {
+        for (LxUuid id : uuids.keySet()) {
             id.setUpdate(false);
         }
         for (LxUuid id : states.keySet()) {
@@ -554,12 +649,7 @@ public class LxServer {
         if (uuids == null || id == null) {
             return null;
         }
-        for (LxUuid i : uuids) {
-            if (id.equals(i)) {
-                return i;
-            }
-        }
-        return null;
+        return uuids.get(id);
     }
 
     /**
@@ -576,7 +666,7 @@ public class LxServer {
         if (i != null) {
             return i;
         }
-        uuids.add(id);
+        uuids.put(id, id);
         return id;
     }
 
@@ -8,22 +8,29 @@
  */
 package org.openhab.binding.loxone.internal.core;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 /**
  * Unique identifier of an object on Loxone Miniserver.
  * <p>
  * It is defined by the Miniserver. UUID can represent a control, room, category, etc. and provides a unique ID space
  * across all objects residing on the Miniserver.
+ * <p>
+ * The 16 bytes of an UUID are kept in two long values, so an UUID can be decoded from a binary state table and used
+ * as a map key without building a string. The string representation is created only when it is needed.
+ * Identifiers that do not follow the UUID format (e.g. of subcontrols) are kept and compared as strings.
  *
  * @author Pawel Pieczul - initial contribution
  *
  */
 public class LxUuid {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int UUID_LENGTH = 35;
+
+    private final long high;
+    private final long low;
+    private final boolean binary;
     private String uuid;
     private String uuidOriginal;
-    private boolean updated;
+    private boolean updated = true;
 
     /**
      * Create a new {@link LxUuid} object from an UUID on a Miniserver.
@@ -32,23 +39,55 @@ public class LxUuid {
      *            identifier retrieved from Loxone Miniserver
      */
     public LxUuid(String uuid) {
-        init(uuid);
-    }
-
-    public LxUuid(byte data[], int offset) {
-        String id = String.format("%08x-%04x-%04x-%02x%02x%02x%02x%02x%02x%02x%02x",
-                ByteBuffer.wrap(data, offset, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(),
-                ByteBuffer.wrap(data, offset + 4, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(),
-                ByteBuffer.wrap(data, offset + 6, 2).order(ByteOrder.LITTLE_ENDIAN).getShort(), data[offset + 8],
-                data[offset + 9], data[offset + 10], data[offset + 11], data[offset + 12], data[offset + 13],
-                data[offset + 14], data[offset + 15]);
-        init(id);
+        long h = 0;
+        long l = 0;
+        boolean valid = uuid.length() == UUID_LENGTH;
+        for (int i = 0; valid && i < UUID_LENGTH; i++) {
+            char c = uuid.charAt(i);
+            int digit = Character.digit(c, 16);
+            if (i == 8 || i == 13 || i == 18) {
+                valid = c == '-';
+            } else if (digit < 0) {
+                valid = false;
+            } else if (i < 18) {
+                h = (h << 4) | digit;
+            } else {
+                l = (l << 4) | digit;
+            }
+        }
+        high = valid ? h : 0;
+        low = valid ? l : 0;
+        binary = valid;
+        uuidOriginal = uuid;
+        if (!valid) {
+            this.uuid = uuid.replaceAll("[^a-zA-Z0-9-]", "-").toUpperCase();
+        }
     }
 
-    private void init(String uuid) {
-        uuidOriginal = uuid;
-        this.uuid = uuidOriginal.replaceAll("[^a-zA-Z0-9-]", "-").toUpperCase();
-        updated = true;
+    /**
+     * Create a new {@link LxUuid} object from a binary UUID received from the Miniserver.
+     * First three fields of the binary UUID are in little endian byte order, last 8 bytes are in network order.
+     *
+     * @param data
+     *            buffer with binary message received from Miniserver
+     * @param offset
+     *            offset in buffer where UUID is expected
+     * @throws IndexOutOfBoundsException
+     *             when the buffer is too short to contain the UUID
+     */
+    public LxUuid(byte data[], int offset) throws IndexOutOfBoundsException {
+        if (offset < 0 || offset + 16 > data.length) {
+            throw new IndexOutOfBoundsException("UUID at offset " + offset + " exceeds buffer of " + data.length);
+        }
+        high = (data[offset + 3] & 0xffL) << 56 | (data[offset + 2] & 0xffL) << 48 | (data[offset + 1] & 0xffL) << 40
+                | (data[offset] & 0xffL) << 32 | (data[offset + 5] & 0xffL) << 24 | (data[offset + 4] & 0xffL) << 16
+                | (data[offset + 7] & 0xffL) << 8 | (data[offset + 6] & 0xffL);
+        long l = 0;
+        for (int i = offset + 8; i < offset + 16; i++) {
+            l = (l << 8) | (data[i] & 0xffL);
+        }
+        low = l;
+        binary = true;
     }
 
     @Override
@@ -63,16 +102,29 @@ public class LxUuid {
             return false;
         }
         LxUuid id = (LxUuid) o;
+        if (binary != id.binary) {
+            return false;
+        }
+        if (binary) {
+            return high == id.high && low == id.low;
+        }
         return uuid.equals(id.uuid);
     }
 
     @Override
     public int hashCode() {
+        if (binary) {
+            long hash = high ^ low;
+            return (int) (hash ^ (hash >>> 32));
+        }
         return uuid.hashCode();
     }
 
     @Override
     public String toString() {
+        if (uuid == null) {
+            uuid = format().toUpperCase();
+        }
         return uuid;
     }
 
@@ -84,6 +136,9 @@ public class LxUuid {
      */
 
     public String getOriginalString() {
+        if (uuidOriginal == null) {
+            uuidOriginal = format();
+        }
         return uuidOriginal;
     }
 
@@ -106,4 +161,26 @@ public class LxUuid {
     boolean getUpdate() {
         return updated;
     }
+
+    /**
+     * Format the UUID the same way as Miniserver does, e.g. 0f2f6b7e-0129-3b4c-ffff403fb0c34b9e
+     *
+     * @return
+     *         UUID string in lower case
+     */
+    private String format() {
+        char[] chars = new char[UUID_LENGTH];
+        int pos = 0;
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            if (shift == 28 || shift == 12) {
+                chars[pos++] = '-';
+            }
+            chars[pos++] = HEX_DIGITS[(int) (high >>> shift) & 0xf];
+        }
+        chars[pos++] = '-';
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            chars[pos++] = HEX_DIGITS[(int) (low >>> shift) & 0xf];
+        }
+        return new String(chars);
+    }
 }
@@ -15,10 +15,17 @@ import java.net.URI;
 import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -62,12 +69,24 @@ class LxWsClient {
     private long connectTimeout = 4; // 4 seconds to wait for connection response
     private int maxBinMsgSize = 3 * 1024; // 3 MB
     private int maxTextMsgSize = 512; // 512 KB
+    private int maxPendingStateUpdates = 10000; // states kept while the server thread is busy
+    private int maxQueuedStateTables = 64; // state tables waiting for the server thread
 
     private ScheduledFuture<?> timeout;
     private LxWebSocket socket;
     private WebSocketClient wsClient;
     private BlockingQueue<LxServerEvent> queue;
     private ClientState state = ClientState.IDLE;
+    private final BlockingQueue<List<LxWsStateUpdateEvent>> stateUpdates = new LinkedBlockingQueue<>(
+            maxQueuedStateTables);
+    private final AtomicBoolean stateUpdatesSignalled = new AtomicBoolean();
+    private final Map<LxUuid, LxWsStateUpdateEvent> pendingStateUpdates = new LinkedHashMap<>();
+    private final AtomicLong stateUpdatesDelayed = new AtomicLong();
+    private final AtomicLong stateUpdatesDropped = new AtomicLong();
+    private final LxConfigCache configCache;
+    private long connectStartTime;
+    private long lastConnectTime;
+    private boolean lastConfigCached;
     private Logger logger = LoggerFactory.getLogger(LxWsClient.class);
 
     private static final ScheduledExecutorService SCHEDULER = ThreadPoolManager
@@ -80,6 +99,7 @@ class LxWsClient {
     private static final String CMD_KEEPALIVE = "keepalive";
     private static final String CMD_ENABLE_UPDATES = "jdev/sps/enablebinstatusupdate";
     private static final String CMD_GET_APP_CONFIG = "data/LoxAPP3.json";
+    private static final String CMD_GET_APP_VERSION = "jdev/sps/LoxAPPversion3";
 
     /**
      * Internal state of the websocket client.
@@ -104,6 +124,10 @@ class LxWsClient {
          * Waiting for authentication
          */
         AUTHENTICATING,
+        /**
+         * Waiting for last modification date of Miniserver's configuration
+         */
+        CHECKING_CONFIGURATION,
         /**
          * Waiting for Miniserver's configuration
          */
@@ -237,6 +261,7 @@ class LxWsClient {
         this.port = port;
         this.user = user;
         this.password = password;
+        this.configCache = new LxConfigCache(host, port);
     }
 
     /**
@@ -264,6 +289,7 @@ class LxWsClient {
                 ClientUpgradeRequest request = new ClientUpgradeRequest();
                 request.setSubProtocols("remotecontrol");
 
+                connectStartTime = System.currentTimeMillis();
                 wsClient.connect(socket, target, request);
                 setClientState(ClientState.CONNECTING);
                 startResponseTimeout();
@@ -475,6 +501,135 @@ class LxWsClient {
         }
     }
 
+    /**
+     * Sends all state updates of a binary state table to {@link LxServer} object as one batch.
+     * <p>
+     * State tables are passed in their own bounded queue, the server's event queue only receives a single
+     * {@link EventType#STATE_UPDATE} event until the server thread takes the updates with {@link #takeStateUpdates()}.
+     * This method never blocks the websocket thread. If the server thread can't keep up and the state table queue is
+     * full, the updates are kept in a pending buffer, where a newer update of a state replaces an older one. The
+     * server thread takes the pending updates after the queued tables. If the pending buffer is full, updates of
+     * further states are dropped.
+     *
+     * @param isValueTable
+     *            true if the table contains value updates, false if it contains text updates
+     * @param data
+     *            buffer with binary message received from Miniserver
+     * @param offset
+     *            offset in buffer where the table starts
+     * @param length
+     *            length of the table in bytes
+     */
+    private void publishStateUpdates(boolean isValueTable, byte data[], int offset, int length) {
+        List<LxWsStateUpdateEvent> received = new ArrayList<>(isValueTable ? length / 24 : 16);
+        try {
+            while (length > 0) {
+                LxWsStateUpdateEvent event = new LxWsStateUpdateEvent(isValueTable, data, offset);
+                offset += event.getSize();
+                length -= event.getSize();
+                received.add(event);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            logger.debug("[{}] malformed state table received, {} updates decoded", debugId, received.size());
+        }
+        synchronized (pendingStateUpdates) {
+            List<LxWsStateUpdateEvent> batch = received;
+            if (!pendingStateUpdates.isEmpty()) {
+                addPendingStateUpdates(received);
+                batch = new ArrayList<>(pendingStateUpdates.values());
+            }
+            if (stateUpdates.offer(batch)) {
+                pendingStateUpdates.clear();
+                if (stateUpdatesSignalled.compareAndSet(false, true)) {
+                    notifyMaster(EventType.STATE_UPDATE, null, null);
+                }
+            } else {
+                if (batch == received) {
+                    logger.debug("[{}] Server thread busy, delaying state updates", debugId);
+                    addPendingStateUpdates(received);
+                }
+                // only the updates of this table, the pending ones have been counted already
+                stateUpdatesDelayed.addAndGet(received.size());
+            }
+        }
+    }
+
+    private void addPendingStateUpdates(List<LxWsStateUpdateEvent> batch) {
+        for (LxWsStateUpdateEvent event : batch) {
+            LxUuid id = event.getUuid();
+            if (pendingStateUpdates.size() < maxPendingStateUpdates || pendingStateUpdates.containsKey(id)) {
+                // remove first, so the newest update is sent last
+                pendingStateUpdates.remove(id);
+                pendingStateUpdates.put(id, event);
+            } else {
+                stateUpdatesDropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Takes all state updates received since the last call, the queued state tables in the order of their reception,
+     * followed by the pending updates that did not fit into the queue. Called by the server thread, when it receives
+     * a {@link EventType#STATE_UPDATE} event.
+     *
+     * @return
+     *         batches of state updates, oldest first
+     */
+    List<List<LxWsStateUpdateEvent>> takeStateUpdates() {
+        // reset first, so that a table queued while taking the updates raises a new event
+        stateUpdatesSignalled.set(false);
+        List<List<LxWsStateUpdateEvent>> batches = new ArrayList<>();
+        stateUpdates.drainTo(batches);
+        synchronized (pendingStateUpdates) {
+            if (!pendingStateUpdates.isEmpty()) {
+                batches.add(new ArrayList<>(pendingStateUpdates.values()));
+                pendingStateUpdates.clear();
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Get the number of state updates that could not be passed to {@link LxServer} object immediately, because its
+     * state table queue was full.
+     *
+     * @return
+     *         number of delayed state updates
+     */
+    long getStateUpdatesDelayed() {
+        return stateUpdatesDelayed.get();
+    }
+
+    /**
+     * Get the number of state updates that were dropped, because the pending buffer was full.
+     *
+     * @return
+     *         number of dropped state updates
+     */
+    long getStateUpdatesDropped() {
+        return stateUpdatesDropped.get();
+    }
+
+    /**
+     * Get the time it took to establish the last connection, from connection request to receiving state updates.
+     *
+     * @return
+     *         connection time in milliseconds
+     */
+    long getLastConnectTime() {
+        return lastConnectTime;
+    }
+
+    /**
+     * See if the last connection used a cached configuration of the Miniserver.
+     *
+     * @return
+     *         true if the configuration was not downloaded
+     */
+    boolean isLastConfigCached() {
+        return lastConfigCached;
+    }
+
     /**
      * Implementation of jetty websocket client
      *
@@ -597,20 +752,10 @@ class LxWsClient {
                         switch (header.type) {
                             case EVENT_TABLE_OF_VALUE_STATES:
                                 stopResponseTimeout();
-                                while (length > 0) {
-                                    LxWsStateUpdateEvent event = new LxWsStateUpdateEvent(true, data, offset);
-                                    offset += event.getSize();
-                                    length -= event.getSize();
-                                    notifyMaster(EventType.STATE_UPDATE, null, event);
-                                }
+                                publishStateUpdates(true, data, offset, length);
                                 break;
                             case EVENT_TABLE_OF_TEXT_STATES:
-                                while (length > 0) {
-                                    LxWsStateUpdateEvent event = new LxWsStateUpdateEvent(false, data, offset);
-                                    offset += event.getSize();
-                                    length -= event.getSize();
-                                    notifyMaster(EventType.STATE_UPDATE, null, event);
-                                }
+                                publishStateUpdates(false, data, offset, length);
                                 break;
                             case KEEPALIVE_RESPONSE:
                             case TEXT_MESSAGE:
@@ -681,22 +826,35 @@ class LxWsClient {
                                                 "Timeout on authentication procedure, response : " + subResp.value);
                                     } else if (code == 200) {
                                         logger.debug("[{}] Websocket authentication successfull.", debugId);
-                                        sendString(CMD_GET_APP_CONFIG);
-                                        setClientState(ClientState.UPDATING_CONFIGURATION);
+                                        sendString(CMD_GET_APP_VERSION);
+                                        setClientState(ClientState.CHECKING_CONFIGURATION);
                                         startResponseTimeout();
                                     }
                                 }
                             }
                             break;
+                        case CHECKING_CONFIGURATION:
+                            resp = gson.fromJson(msg, LxJsonResponse.class);
+                            LxJsonApp3 cachedConfig = null;
+                            if (resp != null && resp.subResponse != null && resp.subResponse.code == 200) {
+                                logger.debug("[{}] Configuration last modified {}", debugId, resp.subResponse.value);
+                                cachedConfig = configCache.get(resp.subResponse.value);
+                            }
+                            if (cachedConfig != null) {
+                                logger.debug("[{}] Configuration not modified, using cached one", debugId);
+                                startRunning(cachedConfig, true);
+                            } else {
+                                sendString(CMD_GET_APP_CONFIG);
+                                setClientState(ClientState.UPDATING_CONFIGURATION);
+                                startResponseTimeout();
+                            }
+                            break;
                         case UPDATING_CONFIGURATION:
                             LxJsonApp3 config = gson.fromJson(msg, LxJsonApp3.class);
                             if (config != null) {
                                 logger.debug("[{}] Received configuration from server", debugId);
-                                notifyMaster(EventType.RECEIVED_CONFIG, null, config);
-                                sendString(CMD_ENABLE_UPDATES);
-                                setClientState(ClientState.RUNNING);
-                                startResponseTimeout();
-                                notifyMaster(EventType.SERVER_ONLINE, null, null);
+                                configCache.put(msg, config);
+                                startRunning(config, false);
                             } else {
                                 notifyAndClose(LxOfflineReason.INTERNAL_ERROR,
                                         "Error processing received configuration");
@@ -714,6 +872,31 @@ class LxWsClient {
             }
         }
 
+        /**
+         * Passes the configuration to {@link LxServer} object and enables state updates
+         *
+         * @param config
+         *            configuration of the Miniserver
+         * @param cached
+         *            true if the configuration has not been downloaded
+         * @throws IOException
+         *             exception when communication error occurs
+         */
+        private void startRunning(LxJsonApp3 config, boolean cached) throws IOException {
+            notifyMaster(EventType.RECEIVED_CONFIG, null, config);
+            synchronized (pendingStateUpdates) {
+                pendingStateUpdates.clear();
+            }
+            sendString(CMD_ENABLE_UPDATES);
+            setClientState(ClientState.RUNNING);
+            startResponseTimeout();
+            lastConnectTime = System.currentTimeMillis() - connectStartTime;
+            lastConfigCached = cached;
+            logger.debug("[{}] Connected in {} ms with {} configuration", debugId, lastConnectTime,
+                    cached ? "cached" : "downloaded");
+            notifyMaster(EventType.SERVER_ONLINE, null, null);
+        }
+
         /**
          * Stops keep alive thread and ceases sending keep alive messages to the Miniserver
          */
@@ -8,9 +8,6 @@
  */
 package org.openhab.binding.loxone.internal.core;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
 /**
  * An event received from Loxone Miniserver with control's state update
  *
@@ -19,8 +16,6 @@ import java.nio.ByteOrder;
  */
 class LxWsStateUpdateEvent {
     private LxUuid uuid;
-    @SuppressWarnings("unused")
-    private LxUuid iconUuid;
     private Double value;
     private String text;
     private int size = 0;
@@ -40,15 +35,15 @@ class LxWsStateUpdateEvent {
         offset += 16;
 
         if (isValueEvent) {
-            value = ByteBuffer.wrap(data, offset, 8).order(ByteOrder.LITTLE_ENDIAN).getDouble();
+            value = Double.longBitsToDouble(readLittleEndian(data, offset, 8));
             size = 24;
             return;
         }
 
-        iconUuid = new LxUuid(data, offset);
+        // icon UUID is not used
         offset += 16;
 
-        int textLen = ByteBuffer.wrap(data, offset, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        int textLen = (int) readLittleEndian(data, offset, 4);
         offset += 4;
 
         text = new String(data, offset, textLen);
@@ -95,4 +90,27 @@ class LxWsStateUpdateEvent {
     int getSize() {
         return size;
     }
+
+    /**
+     * Read a little endian value directly from the binary message, without wrapping the buffer
+     *
+     * @param data
+     *            buffer with binary message received from Miniserver
+     * @param offset
+     *            offset in buffer where the value is expected
+     * @param length
+     *            length of the value in bytes, up to 8
+     * @return
+     *         read value
+     */
+    private static long readLittleEndian(byte data[], int offset, int length) throws IndexOutOfBoundsException {
+        if (offset < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Value at offset " + offset + " exceeds buffer of " + data.length);
+        }
+        long value = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            value = (value << 8) | (data[i] & 0xffL);
+        }
+        return value;
+    }
 }
@@ -16,7 +16,9 @@ import static org.mockito.Mockito.*;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.Collections;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -49,7 +51,10 @@ public class PresenceDetectionTest {
     PresenceDetectionListener listener;
 
     @Mock
-    ExecutorService executorService;
+    PresenceProbeScheduler probeScheduler;
+
+    @Mock
+    Future<?> probeFuture;
 
     @Mock
     Consumer<PresenceDetectionValue> callback;
@@ -74,6 +79,9 @@ public class PresenceDetectionTest {
         // Set a useful configuration. The default presenceDetection is a no-op.
         subject.setHostname("127.0.0.1");
         subject.setTimeout(300);
+        // Waiting for a detection is bounded by the refresh interval. Keep it short, because probes
+        // queued on a mocked scheduler are never executed.
+        subject.setRefreshInterval(500);
         subject.setUseDhcpSniffing(false);
         subject.setIOSDevice(true);
         subject.setServicePorts(Collections.singleton(1010));
@@ -92,7 +100,7 @@ public class PresenceDetectionTest {
     // We will check if they spawn and return in time.
     @Test
     public void threadCountTest() {
-        assertNull(subject.executorService);
+        assertNull(subject.detectionProbes);
 
         doNothing().when(subject).performARPping(anyObject());
         doNothing().when(subject).performJavaPing();
@@ -103,11 +111,11 @@ public class PresenceDetectionTest {
 
         // Thread count: ARP + ICMP + 1*TCP
         assertThat(subject.detectionChecks, is(3));
-        assertNotNull(subject.executorService);
+        assertNotNull(subject.detectionProbes);
 
         subject.waitForPresenceDetection();
         assertThat(subject.detectionChecks, is(0));
-        assertNull(subject.executorService);
+        assertNull(subject.detectionProbes);
     }
 
     @Test
@@ -139,20 +147,21 @@ public class PresenceDetectionTest {
                 anyObject(), anyInt());
         doReturn(true).when(networkUtils).servicePing(anyString(), anyInt(), anyInt());
 
-        doReturn(executorService).when(subject).getThreadsFor(anyInt());
+        subject.probeScheduler = probeScheduler;
+        doReturn(probeFuture).when(probeScheduler).submit(anyString(), any(Runnable.class));
 
         // We expect no valid value
         assertTrue(subject.cache.isExpired());
         // Get value will issue a PresenceDetection internally.
         subject.getValue(callback);
         verify(subject).performPresenceDetection(eq(false));
-        assertNotNull(subject.executorService);
+        assertNotNull(subject.detectionProbes);
         // There should be no straight callback yet
         verify(callback, times(0)).accept(anyObject());
 
         // Perform the different presence detection threads now
         ArgumentCaptor<Runnable> capture = ArgumentCaptor.forClass(Runnable.class);
-        verify(executorService, times(3)).execute(capture.capture());
+        verify(probeScheduler, times(3)).submit(anyString(), capture.capture());
         for (Runnable r : capture.getAllValues()) {
             r.run();
         }
@@ -173,6 +182,29 @@ public class PresenceDetectionTest {
         verify(callback, times(2)).accept(anyObject());
     }
 
+    @Test
+    public void automaticRefreshTest() throws Exception {
+        subject.probeScheduler = probeScheduler;
+        doReturn(probeFuture).when(probeScheduler).submit(anyString(), any(Runnable.class));
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            subject.startAutomaticRefresh(scheduler);
+            verify(probeScheduler, timeout(1000).times(3)).submit(anyString(), any(Runnable.class));
+            // The refresh does not block the scheduler thread while the probes are queued
+            scheduler.submit(() -> {
+            }).get(200, TimeUnit.MILLISECONDS);
+            verify(listener, times(0)).finalDetectionResult(anyObject());
+
+            // The probes are never executed by the mocked scheduler, the detection times out instead
+            verify(listener, timeout(2000)).finalDetectionResult(anyObject());
+            assertNull(subject.detectionProbes);
+        } finally {
+            subject.stopAutomaticRefresh();
+            scheduler.shutdownNow();
+        }
+    }
+
     @Test
     public void reuseValueTests() throws InterruptedException, IOException {
         final long START_TIME = 1000L;
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Tests cases for {@see PresenceProbeScheduler}
+ *
+ * @author David Graeff - Initial contribution
+ */
+public class PresenceProbeSchedulerTest {
+    @Test
+    public void interfaceLimitTest() throws InterruptedException, ExecutionException, TimeoutException {
+        PresenceProbeScheduler subject = new PresenceProbeScheduler(4, 1);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        AtomicBoolean secondStarted = new AtomicBoolean();
+
+        Future<?> first = subject.submit("eth0", () -> {
+            firstStarted.countDown();
+            try {
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Future<?> second = subject.submit("eth0", () -> secondStarted.set(true));
+        // A probe of another interface is not blocked
+        Future<?> other = subject.submit("eth1", () -> {
+        });
+
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        other.get(5, TimeUnit.SECONDS);
+        assertFalse(secondStarted.get());
+
+        releaseFirst.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertTrue(secondStarted.get());
+        assertThat(subject.getProbeCount(), is(3L));
+        assertThat(subject.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void cancelWaitingProbeTest() throws InterruptedException, ExecutionException, TimeoutException {
+        PresenceProbeScheduler subject = new PresenceProbeScheduler(4, 1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        AtomicBoolean secondStarted = new AtomicBoolean();
+
+        Future<?> first = subject.submit("eth0", () -> {
+            try {
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Future<?> second = subject.submit("eth0", () -> secondStarted.set(true));
+        second.cancel(true);
+
+        releaseFirst.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        // The cancelled probe must not block the interface
+        Future<?> third = subject.submit("eth0", () -> {
+        });
+        third.get(5, TimeUnit.SECONDS);
+        assertFalse(secondStarted.get());
+    }
+
+    @Test
+    public void lowPriorityTest() throws InterruptedException, ExecutionException, TimeoutException {
+        PresenceProbeScheduler subject = new PresenceProbeScheduler(1, 1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+
+        subject.submit(null, () -> {
+            try {
+                releaseFirst.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Future<?> discovery = subject.submitLowPriority(null, () -> order.add("discovery"));
+        subject.submit(null, () -> order.add("thing"));
+        // The same applies to the waiting probes of an interface
+        subject.submit("eth0", () -> order.add("arp"));
+        Future<?> discoveryArp = subject.submitLowPriority("eth0", () -> order.add("discovery arp"));
+        subject.submit("eth0", () -> order.add("thing arp"));
+
+        releaseFirst.countDown();
+        discovery.get(5, TimeUnit.SECONDS);
+        discoveryArp.get(5, TimeUnit.SECONDS);
+        assertThat(order, is(Arrays.asList("thing", "arp", "thing arp", "discovery", "discovery arp")));
+    }
+
+    @Test
+    public void initialDelayTest() {
+        PresenceProbeScheduler subject = new PresenceProbeScheduler(1, 1);
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 10; ++i) {
+            long delay = subject.nextInitialDelay(10000);
+            assertTrue(delay >= 0 && delay < 10000);
+            delays.add(delay / 1000);
+        }
+        // Ten refreshes are spread over at least most of the ten seconds
+        assertTrue(delays.size() >= 8);
+    }
+}
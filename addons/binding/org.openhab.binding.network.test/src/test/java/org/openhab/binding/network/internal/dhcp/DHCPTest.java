@@ -9,13 +9,15 @@
 package org.openhab.binding.network.internal.dhcp;
 
 import static org.hamcrest.CoreMatchers.*;
-import static org.junit.Assert.assertThat;
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.io.IOException;
+import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.util.Arrays;
 
 import org.junit.Test;
 import org.openhab.binding.network.internal.dhcp.DHCPPacket.BadPacketException;
@@ -49,4 +51,55 @@ public class DHCPTest {
         s.receivePacket(new DHCPPacket(new byte[] { DHCPPacket.DHCPREQUEST }, null), testAddress);
         verify(dhcpListener, times(2)).dhcpRequestReceived(eq(testIP));
     }
+
+    @Test
+    public void testReusedPacket() throws BadPacketException, IOException {
+        byte[] requestedIP = InetAddress.getByName("10.1.2.3").getAddress();
+        DHCPPacket request = new DHCPPacket(new byte[] { DHCPPacket.DHCPREQUEST }, requestedIP);
+        DHCPPacket renew = new DHCPPacket(new byte[] { DHCPPacket.DHCPREQUEST }, null);
+        DHCPPacket discover = new DHCPPacket(new byte[] { DHCPPacket.DHCPDISCOVER }, null);
+
+        // Replay the packets through one receive buffer and one parsed packet instance
+        byte[] buffer = new byte[DHCPPacket._DHCP_MAX_MTU];
+        DatagramPacket datagram = new DatagramPacket(buffer, buffer.length);
+        DHCPPacket subject = new DHCPPacket();
+        for (int i = 0; i < 1000; ++i) {
+            fill(datagram, request);
+            subject.parse(datagram);
+            assertThat(subject.getDHCPMessageType(), is(DHCPPacket.DHCPREQUEST));
+            assertThat(subject.getRequestedIPAddress().getHostAddress(), is("10.1.2.3"));
+
+            fill(datagram, renew);
+            subject.parse(datagram);
+            assertThat(subject.getDHCPMessageType(), is(DHCPPacket.DHCPREQUEST));
+            assertThat(subject.getRequestedIPAddress(), is(nullValue()));
+
+            fill(datagram, discover);
+            subject.parse(datagram);
+            assertThat(subject.getDHCPMessageType(), is(DHCPPacket.DHCPDISCOVER));
+        }
+    }
+
+    @Test
+    public void testTruncatedPacket() {
+        DHCPPacket request = new DHCPPacket(new byte[] { DHCPPacket.DHCPREQUEST }, new byte[] { 10, 1, 2, 3 });
+        DatagramPacket datagram = new DatagramPacket(new byte[DHCPPacket._DHCP_MAX_MTU], DHCPPacket._DHCP_MAX_MTU);
+        fill(datagram, request);
+        // Cut the end option and a part of the requested address
+        datagram.setLength(datagram.getLength() - 3);
+        DHCPPacket subject = new DHCPPacket(datagram);
+        assertThat(subject.getDHCPMessageType(), is(DHCPPacket.DHCPREQUEST));
+        try {
+            subject.getRequestedIPAddress();
+            fail("A truncated option must not be parsed");
+        } catch (BadPacketException | IOException expected) {
+        }
+    }
+
+    private void fill(DatagramPacket datagram, DHCPPacket packet) {
+        byte[] data = packet.getData();
+        System.arraycopy(data, 0, datagram.getData(), 0, data.length);
+        datagram.setLength(data.length);
+        Arrays.fill(datagram.getData(), data.length, datagram.getData().length, (byte) 0xAA);
+    }
 }
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal.discovery;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.network.internal.discovery.TcpConnectSweep.SweepListener;
+
+/**
+ * Tests cases for {@see TcpConnectSweep}
+ *
+ * @author David Graeff - Initial contribution
+ */
+public class TcpConnectSweepTest {
+    ServerSocket openPort;
+    int closedPort;
+
+    @Before
+    public void setUp() throws IOException {
+        openPort = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try (ServerSocket s = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            closedPort = s.getLocalPort();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        openPort.close();
+    }
+
+    @Test
+    public void sweepTest() throws IOException {
+        SweepListener listener = mock(SweepListener.class);
+        TcpConnectSweep subject = new TcpConnectSweep(1000, 1, 4);
+
+        subject.sweep(Arrays.asList("127.0.0.1"), Arrays.asList(openPort.getLocalPort(), closedPort), listener);
+
+        verify(listener).connected("127.0.0.1", openPort.getLocalPort());
+        verify(listener).refused("127.0.0.1", closedPort);
+        verifyNoMoreInteractions(listener);
+        // Fast answers raise the amount of concurrent connection attempts
+        assertEquals(3, subject.getInFlightLimit());
+    }
+
+    @Test
+    public void stoppedSweepTest() throws IOException {
+        SweepListener listener = mock(SweepListener.class);
+        TcpConnectSweep subject = new TcpConnectSweep(1000, 1, 4);
+        subject.stop();
+
+        subject.sweep(Collections.singleton("127.0.0.1"), Collections.singleton(openPort.getLocalPort()), listener);
+
+        assertTrue(subject.isStopped());
+        verifyZeroInteractions(listener);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@see NeighbourTableArpPing}. The neighbour table is a temporary file and the trigger packets
+ * are sent to loopback addresses.
+ *
+ * @author David Graeff - Initial contribution
+ */
+public class NeighbourTableArpPingTest {
+    static final String HEADER = "IP address       HW type     Flags       HW address            Mask     Device";
+
+    Path neighbourTable;
+    NeighbourTableArpPing subject;
+
+    @Before
+    public void setUp() throws IOException {
+        neighbourTable = Files.createTempFile("arp", null);
+        subject = new NeighbourTableArpPing(neighbourTable, 10);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(neighbourTable);
+    }
+
+    private void writeTable(String... entries) throws IOException {
+        Files.write(neighbourTable, Arrays.asList(HEADER, String.join("\n", entries)), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void resolvedEntryTest() throws IOException, InterruptedException {
+        writeTable("127.0.0.2        0x1         0x2         00:11:22:33:44:55     *        eth0");
+        assertTrue(subject.isAvailable());
+        assertTrue(subject.ping("eth0", "127.0.0.2", 1000));
+        // Other interface
+        assertFalse(subject.ping("wlan0", "127.0.0.2", 100));
+        assertEquals(0, subject.getPendingPings());
+    }
+
+    @Test
+    public void incompleteEntryTest() throws IOException, InterruptedException {
+        writeTable("127.0.0.3        0x1         0x0         00:00:00:00:00:00     *        eth0");
+        assertFalse(subject.ping("eth0", "127.0.0.3", 100));
+        assertFalse(subject.ping("eth0", "127.0.0.4", 100));
+    }
+
+    @Test
+    public void batchedPingsTest() throws IOException, InterruptedException, ExecutionException {
+        writeTable();
+        CompletableFuture<Boolean> first = pingAsync("eth0", "127.0.0.5");
+        CompletableFuture<Boolean> second = pingAsync("eth1", "127.0.0.6");
+        CompletableFuture<Boolean> absent = pingAsync("eth0", "127.0.0.7");
+
+        // The replies show up in the neighbour table later on
+        Thread.sleep(100);
+        writeTable("127.0.0.5        0x1         0x2         00:11:22:33:44:55     *        eth0",
+                "127.0.0.6        0x1         0x2         00:11:22:33:44:66     *        eth1");
+
+        assertTrue(first.get());
+        assertTrue(second.get());
+        assertFalse(absent.get());
+    }
+
+    @Test
+    public void pollingContinuesAfterFailureTest() throws IOException, InterruptedException {
+        writeTable("127.0.0.8        0x1         0x2         00:11:22:33:44:55     *        eth0");
+        NeighbourTableArpPing failingOnce = new NeighbourTableArpPing(neighbourTable, 10) {
+            boolean failed;
+
+            @Override
+            Map<String, String> readNeighbourTable() throws IOException {
+                if (!failed) {
+                    failed = true;
+                    throw new IllegalStateException("Unexpected table format");
+                }
+                return super.readNeighbourTable();
+            }
+        };
+        try {
+            failingOnce.ping("eth0", "127.0.0.8", 1000);
+            fail("The failed poll should be reported");
+        } catch (IOException expected) {
+        }
+        // The next ping is resolved by a new poll
+        assertTrue(failingOnce.ping("eth0", "127.0.0.8", 1000));
+    }
+
+    @Test
+    public void unavailableTableTest() throws IOException {
+        Files.delete(neighbourTable);
+        assertFalse(subject.isAvailable());
+    }
+
+    private CompletableFuture<Boolean> pingAsync(String interfaceName, String ipV4address) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return subject.ping(interfaceName, ipV4address, 1000);
+            } catch (IOException | InterruptedException e) {
+                return false;
+            }
+        });
+    }
+}
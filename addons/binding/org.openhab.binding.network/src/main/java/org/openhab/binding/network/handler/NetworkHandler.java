@@ -176,6 +176,7 @@ public class NetworkHandler extends BaseThingHandler implements PresenceDetectio
             // Hand over binding configurations to the network service
             presenceDetection.setUseDhcpSniffing(configuration.allowDHCPlisten);
             presenceDetection.setUseIcmpPing(configuration.allowSystemPings);
+            presenceDetection.setUseNeighbourTable(configuration.useNeighbourTable);
             presenceDetection.setUseArpPing(true, configuration.arpPingToolPath);
         }
 
@@ -13,10 +13,12 @@ import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -25,6 +27,7 @@ import java.util.function.Consumer;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.network.internal.dhcp.DHCPListenService;
 import org.openhab.binding.network.internal.dhcp.IPRequestReceivedCallback;
+import org.openhab.binding.network.internal.utils.NeighbourTableArpPing;
 import org.openhab.binding.network.internal.utils.NetworkUtils;
 import org.openhab.binding.network.internal.utils.NetworkUtils.ArpPingUtilEnum;
 import org.openhab.binding.network.internal.utils.NetworkUtils.IpPingMethodEnum;
@@ -47,8 +50,10 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     private boolean useDHCPsniffing = false;
     private ArpPingUtilEnum arpPingMethod = null;
     private String arpPingUtilPath = "arping";
+    private boolean useNeighbourTable = false;
     private IpPingMethodEnum pingMethod = null;
     private boolean iosDevice;
+    private boolean lowPriorityProbes;
     private Set<Integer> tcpPorts = new HashSet<Integer>();
 
     private long refreshIntervalInMS = 60000;
@@ -61,8 +66,14 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     ExpiringCacheAsync<PresenceDetectionValue> cache;
     private final PresenceDetectionListener updateListener;
     private ScheduledFuture<?> refreshJob;
+    private ScheduledExecutorService refreshScheduler;
+    private ScheduledFuture<?> detectionTimeoutJob;
     private InetAddress destination;
-    ExecutorService executorService;
+    PresenceProbeScheduler probeScheduler = PresenceProbeScheduler.getInstance();
+    // The probes of the ongoing detection, null if no detection is performed right now
+    List<Future<?>> detectionProbes;
+    private CountDownLatch detectionFinished;
+    private long detectionStartInMS;
     private String dhcpState = "off";
     Integer currentCheck = 0;
     int detectionChecks;
@@ -139,21 +150,35 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     /**
      * Enables or disables ARP pings. Will be automatically disabled if the destination
      * is not an IPv4 address. If the feature test for the native arping utility fails,
-     * it will be disabled as well.
+     * it will be disabled as well. If the neighbour table is used, no arping utility is necessary.
      *
      * @param enable Enable or disable ARP ping
      * @param arpPingUtilPath The file path to the utility
      */
     public void setUseArpPing(boolean enable, String arpPingUtilPath) {
         this.arpPingUtilPath = arpPingUtilPath;
-        if (!enable || StringUtils.isBlank(arpPingUtilPath)) {
+        if (!enable || (!useNeighbourTable && StringUtils.isBlank(arpPingUtilPath))) {
             arpPingMethod = null;
             return;
         } else if (destination == null || !(destination instanceof Inet4Address)) {
             arpPingMethod = null;
             return;
         }
-        arpPingMethod = networkUtils.determineNativeARPpingMethod(arpPingUtilPath);
+        if (useNeighbourTable) {
+            arpPingMethod = networkUtils.determineNeighbourTableARPpingMethod();
+        } else {
+            arpPingMethod = networkUtils.determineNativeARPpingMethod(arpPingUtilPath);
+        }
+    }
+
+    /**
+     * Use the in-process ARP ping of {@link NeighbourTableArpPing} instead of the arping utility.
+     * Must be called before {@link #setUseArpPing(boolean, String)}.
+     *
+     * @param enable Enable or disable the in-process ARP ping
+     */
+    public void setUseNeighbourTable(boolean enable) {
+        this.useNeighbourTable = enable;
     }
 
     public ArpPingUtilEnum arpPingMethod() {
@@ -184,6 +209,14 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         iosDevice = value;
     }
 
+    /**
+     * Set to true if the probes should only be executed if no probes of other presence detections wait,
+     * for example for a network discovery.
+     */
+    public void setLowPriorityProbes(boolean value) {
+        lowPriorityProbes = value;
+    }
+
     /**
      * Return the last seen value in milliseconds based on {@link System.currentTimeMillis()} or 0 if not seen yet.
      */
@@ -202,14 +235,10 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         cache.getValue(callback);
     }
 
-    public ExecutorService getThreadsFor(int threadCount) {
-        return Executors.newFixedThreadPool(threadCount);
-    }
-
     /**
      * Perform a presence detection with ICMP-, ARP ping and
-     * TCP connection attempts simultaneously. A fixed thread pool will be created with as many
-     * thread as necessary to perform all tests at once.
+     * TCP connection attempts simultaneously. All probes are queued on the {@link PresenceProbeScheduler},
+     * which is shared by all presence detections.
      *
      * This is a NO-OP, if there is already an ongoing detection or if the cached value
      * is not expired yet.
@@ -223,7 +252,24 @@ public class PresenceDetection implements IPRequestReceivedCallback {
      * @return Return true if a presence detection is performed and false otherwise.
      */
     public boolean performPresenceDetection(boolean waitForDetectionToFinish) {
-        if (executorService != null) {
+        if (!startPresenceDetection()) {
+            return false;
+        }
+
+        if (waitForDetectionToFinish) {
+            waitForPresenceDetection();
+        }
+
+        return true;
+    }
+
+    /**
+     * Queue all probes of a new presence detection.
+     *
+     * @return Return true if a presence detection has been started and false otherwise.
+     */
+    private synchronized boolean startPresenceDetection() {
+        if (detectionProbes != null) {
             logger.debug(
                     "There is already an ongoing presence discovery for {} and a new one was issued by the scheduler! TCP Port {}",
                     hostname, tcpPorts);
@@ -250,68 +296,72 @@ public class PresenceDetection implements IPRequestReceivedCallback {
             return false;
         }
 
-        executorService = getThreadsFor(detectionChecks);
+        detectionStartInMS = System.currentTimeMillis();
+        final CountDownLatch finished = new CountDownLatch(1);
+        detectionFinished = finished;
+        detectionProbes = new ArrayList<>(detectionChecks);
+        // Finish the detection without blocking a thread, if probes wait in the queue for too long
+        if (refreshScheduler != null) {
+            detectionTimeoutJob = refreshScheduler.schedule(() -> detectionTimedOut(finished),
+                    getDetectionTimeout(), TimeUnit.MILLISECONDS);
+        }
 
         for (Integer tcpPort : tcpPorts) {
-            executorService.execute(() -> {
-                Thread.currentThread().setName("presenceDetectionTCP_" + hostname + " " + String.valueOf(tcpPort));
+            detectionProbes.add(submitProbe(null, () -> {
                 performServicePing(tcpPort);
                 checkIfFinished();
-            });
+            }));
         }
 
-        // ARP ping for IPv4 addresses. Use an own executor for each network interface
+        // ARP ping for IPv4 addresses. The probes are limited per network interface by the scheduler
         if (interfaceNames != null) {
             for (final String interfaceName : interfaceNames) {
-                executorService.execute(() -> {
-                    Thread.currentThread().setName("presenceDetectionARP_" + hostname + " " + interfaceName);
+                detectionProbes.add(submitProbe(interfaceName, () -> {
                     performARPping(interfaceName);
                     checkIfFinished();
-                });
+                }));
             }
         }
 
         // ICMP ping
         if (pingMethod != null) {
-            executorService.execute(() -> {
+            detectionProbes.add(submitProbe(null, () -> {
                 if (pingMethod != IpPingMethodEnum.JAVA_PING) {
-                    Thread.currentThread().setName("presenceDetectionICMP_" + hostname);
                     performSystemPing();
                 } else {
                     performJavaPing();
                 }
                 checkIfFinished();
-            });
-        }
-
-        if (waitForDetectionToFinish) {
-            waitForPresenceDetection();
+            }));
         }
 
         return true;
     }
 
+    private Future<?> submitProbe(String interfaceName, Runnable probe) {
+        return lowPriorityProbes ? probeScheduler.submitLowPriority(interfaceName, probe)
+                : probeScheduler.submit(interfaceName, probe);
+    }
+
     /**
      * Calls updateListener.finalDetectionResult() with a final result value.
      * Safe to be called from different threads. After a call to this method,
-     * the presence detection process is finished and all threads are forcefully
-     * shut down.
+     * the presence detection process is finished and all remaining probes are cancelled.
      */
     private synchronized void submitFinalResult() {
         // Do nothing if we are not in a detection process
-        if (executorService == null) {
+        if (detectionProbes == null) {
             return;
         }
         // Finish the detection process
-        executorService.shutdownNow();
-        executorService = null;
+        cancelProbes();
         detectionChecks = 0;
 
         PresenceDetectionValue v;
 
         // The cache will be expired by now if cache_time < timeoutInMS. But the device might be actually reachable.
         // Therefore use lastSeenInMS here and not cache.isExpired() to determine if we got a ping response.
-        if (lastSeenInMS + timeoutInMS + 100 < System.currentTimeMillis()) {
+        if (lastSeenInMS < detectionStartInMS) {
             // We haven't seen the device in the detection process
             v = new PresenceDetectionValue(destination.getHostAddress(), -1);
         } else {
@@ -320,6 +370,45 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         }
         cache.setValue(v);
         updateListener.finalDetectionResult(v);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Presence detection for {} finished, probe queue depth {}, average probe time {} ms",
+                    hostname, probeScheduler.getQueueDepth(), Math.round(probeScheduler.getAverageProbeTime()));
+        }
+    }
+
+    /**
+     * Cancels all probes of the ongoing detection and wakes up waiting threads.
+     */
+    private synchronized void cancelProbes() {
+        if (detectionProbes == null) {
+            return;
+        }
+        for (Future<?> probe : detectionProbes) {
+            probe.cancel(true);
+        }
+        detectionProbes = null;
+        if (detectionTimeoutJob != null) {
+            detectionTimeoutJob.cancel(false);
+            detectionTimeoutJob = null;
+        }
+        detectionFinished.countDown();
+    }
+
+    /**
+     * Submits the final result of the given detection, if it is still ongoing.
+     */
+    private synchronized void detectionTimedOut(CountDownLatch finished) {
+        if (detectionFinished == finished) {
+            submitFinalResult();
+        }
+    }
+
+    /**
+     * Return the maximum duration of a detection. Probes may wait in the queue of the {@link PresenceProbeScheduler},
+     * therefore the refresh interval is the upper bound.
+     */
+    private long getDetectionTimeout() {
+        return Math.max(refreshIntervalInMS, timeoutInMS + 100);
     }
 
     /**
@@ -329,6 +418,9 @@ public class PresenceDetection implements IPRequestReceivedCallback {
      * Thread safe.
      */
     private synchronized void checkIfFinished() {
+        if (detectionProbes == null) {
+            return;
+        }
         currentCheck += 1;
         if (currentCheck < detectionChecks) {
             return;
@@ -337,21 +429,25 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     }
 
     /**
-     * Waits for the presence detection threads to finish. Returns immediately
-     * if no presence detection is performed right now.
+     * Waits for the presence detection probes to finish. Returns immediately
+     * if no presence detection is performed right now. Probes may wait in the queue of the
+     * {@link PresenceProbeScheduler}, therefore the refresh interval is the upper bound.
+     * The automatic refresh never waits, its detections finish asynchronously.
      */
     public void waitForPresenceDetection() {
-        if (executorService == null) {
-            return;
+        CountDownLatch finished;
+        synchronized (this) {
+            if (detectionProbes == null) {
+                return;
+            }
+            finished = detectionFinished;
         }
         try {
-            // We may get interrupted here by cancelRefreshJob().
-            executorService.awaitTermination(timeoutInMS + 100, TimeUnit.MILLISECONDS);
+            finished.await(getDetectionTimeout(), TimeUnit.MILLISECONDS);
             submitFinalResult();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // Reset interrupt flag
-            executorService.shutdownNow();
-            executorService = null;
+            cancelProbes();
         }
     }
 
@@ -468,7 +564,8 @@ public class PresenceDetection implements IPRequestReceivedCallback {
     }
 
     /**
-     * Start/Restart a fixed scheduled runner to update the devices reach-ability state.
+     * Start/Restart a fixed scheduled runner to update the devices reach-ability state. The runner only queues the
+     * probes and does not wait for the result, the scheduler is also used to time out detections.
      *
      * @param scheduledExecutorService A scheduler to run pings periodically.
      */
@@ -476,8 +573,10 @@ public class PresenceDetection implements IPRequestReceivedCallback {
         if (refreshJob != null && !refreshJob.isDone()) {
             refreshJob.cancel(true);
         }
-        refreshJob = scheduledExecutorService.scheduleWithFixedDelay(() -> performPresenceDetection(true), 0,
-                refreshIntervalInMS, TimeUnit.MILLISECONDS);
+        refreshScheduler = scheduledExecutorService;
+        // Spread the refreshes of all things over the refresh interval
+        refreshJob = scheduledExecutorService.scheduleWithFixedDelay(() -> performPresenceDetection(false),
+                probeScheduler.nextInitialDelay(refreshIntervalInMS), refreshIntervalInMS, TimeUnit.MILLISECONDS);
 
         enableDHCPListen(useDHCPsniffing);
     }
@@ -497,6 +596,8 @@ public class PresenceDetection implements IPRequestReceivedCallback {
             refreshJob.cancel(true);
             refreshJob = null;
         }
+        cancelProbes();
+        refreshScheduler = null;
         enableDHCPListen(false);
     }
 
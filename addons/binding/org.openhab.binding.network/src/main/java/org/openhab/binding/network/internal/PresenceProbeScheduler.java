@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The {@link PresenceProbeScheduler} executes the TCP, ICMP and ARP probes of all {@link PresenceDetection}s
+ * on one shared and bounded thread pool. Probes which are bound to a network interface (ARP pings) are
+ * additionally limited per interface, further probes for that interface wait in a queue.
+ *
+ * Probes with a low priority, like the probes of a network discovery, are only started if no other probes wait.
+ * A discovery which queues many probes therefore does not delay the refreshes of the things.
+ *
+ * The refreshes of all presence detections are spread over the refresh interval, so that not all
+ * things probe at the same time.
+ *
+ * @author David Graeff - Initial contribution
+ */
+public class PresenceProbeScheduler {
+    public static final int DEFAULT_MAX_THREADS = 32;
+    public static final int DEFAULT_MAX_PROBES_PER_INTERFACE = 4;
+    private static final double GOLDEN_RATIO_FRACTION = 0.6180339887498949;
+
+    private static PresenceProbeScheduler instance;
+
+    private final ThreadPoolExecutor executor;
+    private final int maxProbesPerInterface;
+    private final Map<String, InterfaceQueue> interfaceQueues = new HashMap<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong probeTimeInNS = new AtomicLong();
+    private final AtomicInteger refreshCount = new AtomicInteger();
+    private final AtomicLong submitCount = new AtomicLong();
+
+    /**
+     * Return the scheduler which is shared by all presence detections.
+     */
+    public static synchronized PresenceProbeScheduler getInstance() {
+        if (instance == null) {
+            instance = new PresenceProbeScheduler(DEFAULT_MAX_THREADS, DEFAULT_MAX_PROBES_PER_INTERFACE);
+        }
+        return instance;
+    }
+
+    /**
+     * Stop the scheduler which is shared by all presence detections, running probes are interrupted.
+     * A new scheduler is created on the next call of {@link #getInstance()}.
+     */
+    public static synchronized void shutdownInstance() {
+        if (instance != null) {
+            instance.executor.shutdownNow();
+            instance = null;
+        }
+    }
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param maxThreads The maximum amount of concurrently executed probes.
+     * @param maxProbesPerInterface The maximum amount of concurrently executed probes per network interface.
+     */
+    public PresenceProbeScheduler(int maxThreads, int maxProbesPerInterface) {
+        this.maxProbesPerInterface = maxProbesPerInterface;
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "networkPresenceProbe-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a probe. The returned future can be used to cancel the probe, a running probe will be interrupted.
+     *
+     * @param interfaceName The network interface the probe is bound to or null.
+     * @param probe The probe
+     */
+    public Future<?> submit(@Nullable String interfaceName, Runnable probe) {
+        return submit(interfaceName, probe, false);
+    }
+
+    /**
+     * Queue a probe with a low priority. It is started after all waiting probes with a normal priority.
+     *
+     * @param interfaceName The network interface the probe is bound to or null.
+     * @param probe The probe
+     */
+    public Future<?> submitLowPriority(@Nullable String interfaceName, Runnable probe) {
+        return submit(interfaceName, probe, true);
+    }
+
+    private Future<?> submit(@Nullable String interfaceName, Runnable probe, boolean lowPriority) {
+        ProbeTask task = new ProbeTask(interfaceName, probe, lowPriority, submitCount.getAndIncrement());
+        queueDepth.incrementAndGet();
+        if (interfaceName == null) {
+            executor.execute(task);
+            return task;
+        }
+        synchronized (interfaceQueues) {
+            InterfaceQueue interfaceQueue = interfaceQueues.computeIfAbsent(interfaceName, k -> new InterfaceQueue());
+            if (interfaceQueue.running < maxProbesPerInterface) {
+                interfaceQueue.running++;
+                executor.execute(task);
+            } else {
+                interfaceQueue.waiting.add(task);
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Return the initial delay for a new automatic refresh. The delays of consecutive calls are evenly
+     * distributed over the refresh interval.
+     *
+     * @param refreshIntervalInMS The refresh interval in milliseconds
+     */
+    public long nextInitialDelay(long refreshIntervalInMS) {
+        double fraction = (refreshCount.getAndIncrement() * GOLDEN_RATIO_FRACTION) % 1.0;
+        return (long) (fraction * refreshIntervalInMS);
+    }
+
+    /**
+     * Return the amount of probes which are waiting for execution.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Return the amount of executed probes.
+     */
+    public long getProbeCount() {
+        return probeCount.get();
+    }
+
+    /**
+     * Return the average execution time of a probe in milliseconds.
+     */
+    public double getAverageProbeTime() {
+        long count = probeCount.get();
+        return count == 0 ? 0 : probeTimeInNS.get() / 1000000.0 / count;
+    }
+
+    /**
+     * Start the next waiting probe of the interface or free the slot of the finished probe.
+     */
+    private void probeFinished(ProbeTask task) {
+        if (task.interfaceName == null) {
+            return;
+        }
+        synchronized (interfaceQueues) {
+            InterfaceQueue interfaceQueue = interfaceQueues.get(task.interfaceName);
+            ProbeTask next = interfaceQueue.waiting.poll();
+            if (next != null) {
+                executor.execute(next);
+            } else {
+                interfaceQueue.running--;
+            }
+        }
+    }
+
+    /**
+     * A queued probe, measures the execution time. Probes are ordered by priority first and by submission.
+     */
+    private class ProbeTask extends FutureTask<Void> implements Comparable<ProbeTask> {
+        private final @Nullable String interfaceName;
+        private final boolean lowPriority;
+        private final long sequence;
+
+        public ProbeTask(@Nullable String interfaceName, Runnable probe, boolean lowPriority, long sequence) {
+            super(() -> {
+                long start = System.nanoTime();
+                try {
+                    probe.run();
+                } finally {
+                    probeTimeInNS.addAndGet(System.nanoTime() - start);
+                    probeCount.incrementAndGet();
+                }
+            }, null);
+            this.interfaceName = interfaceName;
+            this.lowPriority = lowPriority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(ProbeTask other) {
+            if (lowPriority != other.lowPriority) {
+                return lowPriority ? 1 : -1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            queueDepth.decrementAndGet();
+            try {
+                super.run();
+            } finally {
+                probeFinished(this);
+            }
+        }
+    }
+
+    /**
+     * The running and waiting probes of a network interface.
+     */
+    private static class InterfaceQueue {
+        int running;
+        final Queue<ProbeTask> waiting = new PriorityQueue<>();
+    }
+}
@@ -10,7 +10,7 @@ package org.openhab.binding.network.internal.dhcp;
 
 import java.net.SocketException;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,46 +21,52 @@ import org.slf4j.LoggerFactory;
  * receiver thread will be started. If the last IPRequestReceivedCallback is removed, the thread will be stopped
  * after the receive socket is closed.
  * IPRequestReceivedCallback will be called for the address that is registered and matches the
- * DHO_DHCP_REQUESTED_ADDRESS address field.
+ * DHO_DHCP_REQUESTED_ADDRESS address field. The receiver thread looks up the listeners without locking,
+ * registering and unregistering never blocks it.
  *
  * @author David Graeff - Initial contribution
  */
 public class DHCPListenService {
     static DHCPPacketListenerServer instance;
-    static Map<String, IPRequestReceivedCallback> registeredListeners = new TreeMap<>();
+    static Map<String, IPRequestReceivedCallback> registeredListeners = new ConcurrentHashMap<>();
     static Logger logger = LoggerFactory.getLogger(DHCPListenService.class);
 
-    public static synchronized DHCPPacketListenerServer register(String hostAddress,
-            IPRequestReceivedCallback dhcpListener) throws SocketException {
-        if (instance == null) {
-            instance = new DHCPPacketListenerServer((String ipAddress) -> {
-                IPRequestReceivedCallback listener = registeredListeners.get(ipAddress);
-                if (listener != null) {
-                    logger.info("DHCP request for registered address: {}", ipAddress);
-                    listener.dhcpRequestReceived(ipAddress);
-                } else {
-                    logger.info("DHCP request for unknown address: {}", ipAddress);
+    public static DHCPPacketListenerServer register(String hostAddress, IPRequestReceivedCallback dhcpListener)
+            throws SocketException {
+        registeredListeners.put(hostAddress, dhcpListener);
+        synchronized (DHCPListenService.class) {
+            if (instance == null) {
+                try {
+                    instance = new DHCPPacketListenerServer((String ipAddress) -> {
+                        IPRequestReceivedCallback listener = registeredListeners.get(ipAddress);
+                        if (listener != null) {
+                            logger.info("DHCP request for registered address: {}", ipAddress);
+                            listener.dhcpRequestReceived(ipAddress);
+                        } else {
+                            logger.debug("DHCP request for unknown address: {}", ipAddress);
+                        }
+                    });
+                } catch (SocketException e) {
+                    registeredListeners.remove(hostAddress, dhcpListener);
+                    throw e;
                 }
-            });
-            instance.start();
-        }
-        synchronized (registeredListeners) {
-            registeredListeners.put(hostAddress, dhcpListener);
+                instance.start();
+            }
+            return instance;
         }
-        return instance;
     }
 
     public static void unregister(String hostAddress) {
-        synchronized (registeredListeners) {
-            registeredListeners.remove(hostAddress);
+        registeredListeners.remove(hostAddress);
+
+        synchronized (DHCPListenService.class) {
             if (!registeredListeners.isEmpty()) {
                 return;
             }
+            if (instance != null) {
+                instance.close();
+            }
+            instance = null;
         }
-
-        if (instance != null) {
-            instance.close();
-        }
-        instance = null;
     }
 }
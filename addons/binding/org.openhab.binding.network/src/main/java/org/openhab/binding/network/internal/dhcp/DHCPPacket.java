@@ -8,24 +8,23 @@
  */
 package org.openhab.binding.network.internal.dhcp;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Parses a dhcp packet and extracts the OP code and all DHCP Options.
+ * Parses a dhcp packet and extracts the OP code and DHCP Options.
+ * The options are not copied, but looked up in the receive buffer on demand.
+ * An instance can be reused for the next packet, as long as the options of the previous packet are not needed anymore.
  *
  * Example:
  * DatagramSocket socket = new DatagramSocket(67);
- * while (true) {
  * DatagramPacket packet = new DatagramPacket(new byte[1500], 1500);
+ * DHCPPacket dhcp = new DHCPPacket();
+ * while (true) {
  * socket.receive(packet);
- * DHCPPacket dhcp = new DHCPPacket(packet);
+ * dhcp.parse(packet);
  * InetAddress requestedAddress = dhcp.getRequestedIPAddress();
  * }
  *
@@ -84,31 +83,53 @@ class DHCPPacket {
 
     }
 
+    // Offset of the first option: fixed BOOTP header and magic cookie
+    static final int _OPTIONS_OFFSET = _BOOTP_ABSOLUTE_MIN_LEN + 4;
+
     private byte op;
-    private Map<Byte, byte[]> options;
+    private byte[] buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Creates an empty packet. Call {@link #parse(DatagramPacket)} before accessing any field.
+     */
+    DHCPPacket() {
+    }
 
     /**
      * Package private constructor for test suite.
      */
     DHCPPacket(byte[] messageType, byte[] requestedIP) {
-        this.op = BOOTREQUEST;
-        this.options = new LinkedHashMap<Byte, byte[]>();
-        options.put(DHO_DHCP_MESSAGE_TYPE, messageType);
+        int optionsLength = 2 + messageType.length + (requestedIP != null ? 2 + requestedIP.length : 0) + 1;
+        byte[] data = new byte[_OPTIONS_OFFSET + optionsLength];
+        data[0] = BOOTREQUEST;
+        writeInt(data, _BOOTP_ABSOLUTE_MIN_LEN, _MAGIC_COOKIE);
+        int pos = _OPTIONS_OFFSET;
+        pos = writeOption(data, pos, DHO_DHCP_MESSAGE_TYPE, messageType);
         if (requestedIP != null) {
-            options.put(DHO_DHCP_REQUESTED_ADDRESS, requestedIP);
+            pos = writeOption(data, pos, DHO_DHCP_REQUESTED_ADDRESS, requestedIP);
         }
+        data[pos] = DHO_END;
+        parse(data, 0, data.length);
     }
 
     /**
      * Constructor for the <tt>DHCPPacket</tt> class. Parses the given datagram.
      */
-    public DHCPPacket(DatagramPacket datagram) throws BadPacketException, IOException {
-        this.op = BOOTREPLY;
-        this.options = new LinkedHashMap<Byte, byte[]>();
+    public DHCPPacket(DatagramPacket datagram) throws BadPacketException {
+        parse(datagram);
+    }
+
+    /**
+     * Parses the given datagram. The datagram buffer is referenced until the next call of this method.
+     */
+    public void parse(DatagramPacket datagram) throws BadPacketException {
+        parse(datagram.getData(), datagram.getOffset(), datagram.getLength());
+    }
 
-        byte[] buffer = datagram.getData();
-        int offset = datagram.getOffset();
-        int length = datagram.getLength();
+    private void parse(byte[] buffer, int offset, int length) throws BadPacketException {
+        this.buffer = null;
 
         // absolute minimum size for a valid packet
         if (length < _BOOTP_ABSOLUTE_MIN_LEN) {
@@ -119,67 +140,74 @@ class DHCPPacket {
         if (length > _DHCP_MAX_MTU) {
             throw new BadPacketException("DHCP Packet too big (" + length + ") max MTU is " + _DHCP_MAX_MTU);
         }
-
-        // turn buffer into a readable stream
-        ByteArrayInputStream inBStream = new ByteArrayInputStream(buffer, offset, length);
-        DataInputStream inStream = new DataInputStream(inBStream);
-
-        byte[] dummy = new byte[128];
-
-        // parse static part of packet
-        this.op = inStream.readByte();
-        inStream.readByte(); // read hardware type (ETHERNET)
-        inStream.readByte(); // read hardware address length (6 bytes)
-        inStream.readByte(); // read hops
-        inStream.readInt(); // read transaction id
-        inStream.readShort(); // read secsonds elapsed
-        inStream.readShort(); // read flags
-        inStream.readFully(dummy, 0, 4); // ciaddr
-        inStream.readFully(dummy, 0, 4); // yiaddr
-        inStream.readFully(dummy, 0, 4); // siaddr
-        inStream.readFully(dummy, 0, 4); // giaddr
-        inStream.readFully(dummy, 0, 16); // chaddr
-        inStream.readFully(dummy, 0, 64); // sname
-        inStream.readFully(dummy, 0, 128); // file
-
         // check for DHCP MAGIC_COOKIE
-        inBStream.mark(4); // read ahead 4 bytes
-        if (inStream.readInt() != _MAGIC_COOKIE) {
+        if (length < _OPTIONS_OFFSET || readInt(buffer, offset + _BOOTP_ABSOLUTE_MIN_LEN) != _MAGIC_COOKIE) {
             throw new BadPacketException("Packet seams to be truncated");
         }
 
-        // DHCP Packet: parsing options
-        int type = 0;
-
-        while (true) {
-            int r = inBStream.read();
-            if (r < 0) {
-                break;
-            } // EOF
+        this.op = buffer[offset];
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
 
-            type = (byte) r;
+    /**
+     * Package private for test suite. Returns a copy of the parsed packet.
+     */
+    byte[] getData() {
+        return Arrays.copyOfRange(buffer, offset, offset + length);
+    }
 
+    /**
+     * Returns the offset of the value of the given option within the buffer, or -1 if the option is not present.
+     * The length of the value is stored in the byte in front of the value.
+     */
+    private int findOption(byte code) throws BadPacketException {
+        if (buffer == null) {
+            throw new BadPacketException("No packet parsed");
+        }
+        int end = offset + length;
+        int pos = offset + _OPTIONS_OFFSET;
+        while (pos < end) {
+            byte type = buffer[pos++];
             if (type == DHO_PAD) {
                 continue;
             } // skip Padding
             if (type == DHO_END) {
-                break;
-            } // break if end of options
-
-            r = inBStream.read();
-            if (r < 0) {
+                return -1;
+            } // end of options
+            if (pos >= end) {
                 break;
             } // EOF
+            int len = buffer[pos] & 0xFF;
+            if (pos + 1 + len > end) {
+                break;
+            } // option exceeds the packet
+            if (type == code) {
+                return pos + 1;
+            }
+            pos += 1 + len;
+        }
+        throw new BadPacketException("Packet seams to be truncated");
+    }
 
-            int len = Math.min(r, inBStream.available());
-            byte[] unit_opt = new byte[len];
-            inBStream.read(unit_opt);
+    private static int readInt(byte[] data, int pos) {
+        return ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16) | ((data[pos + 2] & 0xFF) << 8)
+                | (data[pos + 3] & 0xFF);
+    }
 
-            this.options.put((byte) type, unit_opt);
-        }
-        if (type != DHO_END) {
-            throw new BadPacketException("Packet seams to be truncated");
-        }
+    private static void writeInt(byte[] data, int pos, int value) {
+        data[pos] = (byte) (value >>> 24);
+        data[pos + 1] = (byte) (value >>> 16);
+        data[pos + 2] = (byte) (value >>> 8);
+        data[pos + 3] = (byte) value;
+    }
+
+    private static int writeOption(byte[] data, int pos, byte code, byte[] value) {
+        data[pos++] = code;
+        data[pos++] = (byte) value.length;
+        System.arraycopy(value, 0, data, pos, value.length);
+        return pos + value.length;
     }
 
     /**
@@ -201,29 +229,30 @@ class DHCPPacket {
      * @return option type, of <tt>null</tt> if not present.
      */
     public Byte getDHCPMessageType() {
-        byte[] opt = options.get(DHO_DHCP_MESSAGE_TYPE);
-        if (opt == null) {
+        int pos = findOption(DHO_DHCP_MESSAGE_TYPE);
+        if (pos < 0) {
             return null;
         }
-        if (opt.length != 1) {
-            throw new BadPacketException(
-                    "option " + DHO_DHCP_MESSAGE_TYPE + " is wrong size:" + opt.length + " should be 1");
+        int len = buffer[pos - 1] & 0xFF;
+        if (len != 1) {
+            throw new BadPacketException("option " + DHO_DHCP_MESSAGE_TYPE + " is wrong size:" + len + " should be 1");
         }
-        return opt[0];
+        return buffer[pos];
     }
 
     /**
      * Returns the requested IP address of a BOOTREQUEST packet.
      */
     InetAddress getRequestedIPAddress() throws IllegalArgumentException, UnknownHostException {
-        byte[] opt = options.get(DHO_DHCP_REQUESTED_ADDRESS);
-        if (opt == null) {
+        int pos = findOption(DHO_DHCP_REQUESTED_ADDRESS);
+        if (pos < 0) {
             return null;
         }
-        if (opt.length != 4) {
+        int len = buffer[pos - 1] & 0xFF;
+        if (len != 4) {
             throw new BadPacketException(
-                    "option " + DHO_DHCP_REQUESTED_ADDRESS + " is wrong size:" + opt.length + " should be 4");
+                    "option " + DHO_DHCP_REQUESTED_ADDRESS + " is wrong size:" + len + " should be 4");
         }
-        return InetAddress.getByAddress(opt);
+        return InetAddress.getByAddress(new byte[] { buffer[pos], buffer[pos + 1], buffer[pos + 2], buffer[pos + 3] });
     }
 }
@@ -29,9 +29,11 @@ import org.slf4j.LoggerFactory;
  * @author David Graeff - Initial contribution
  */
 public class DHCPPacketListenerServer extends Thread {
-    private byte[] buffer = new byte[1024];
+    private byte[] buffer = new byte[DHCPPacket._DHCP_MAX_MTU];
     DatagramSocket dsocket;
     private DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+    // The receive buffer and the parsed packet are reused for every datagram
+    private final DHCPPacket dhcpPacket = new DHCPPacket();
     boolean willbeclosed = false;
     Logger logger = LoggerFactory.getLogger(DHCPPacketListenerServer.class);
     private boolean useUnprevilegedPort = false;
@@ -86,7 +88,12 @@ public class DHCPPacketListenerServer extends Thread {
             while (!willbeclosed) {
                 packet.setLength(buffer.length);
                 dsocket.receive(packet);
-                receivePacket(new DHCPPacket(packet), packet.getAddress());
+                try {
+                    dhcpPacket.parse(packet);
+                    receivePacket(dhcpPacket, packet.getAddress());
+                } catch (BadPacketException e) {
+                    logger.trace("Skipping invalid DHCP packet: {}", e.getMessage());
+                }
             }
         } catch (IOException e) {
             if (willbeclosed) {
@@ -10,14 +10,18 @@ package org.openhab.binding.network.internal.discovery;
 
 import static org.openhab.binding.network.NetworkBindingConstants.*;
 
+import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.smarthome.config.core.Configuration;
 import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
@@ -28,6 +32,7 @@ import org.openhab.binding.network.internal.NetworkBindingConfiguration;
 import org.openhab.binding.network.internal.PresenceDetection;
 import org.openhab.binding.network.internal.PresenceDetectionListener;
 import org.openhab.binding.network.internal.PresenceDetectionValue;
+import org.openhab.binding.network.internal.discovery.TcpConnectSweep.SweepListener;
 import org.openhab.binding.network.internal.utils.NetworkUtils;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -41,7 +46,8 @@ import com.google.common.collect.Sets;
 /**
  * The {@link NetworkDiscoveryService} is responsible for discovering devices on
  * the current Network. It uses every Network Interface which is connected to a network.
- * It tries common TCP ports to connect to, ICMP pings and ARP pings.
+ * It tries common TCP ports to connect to with a {@link TcpConnectSweep} first. Devices which
+ * did not answer are tried with ICMP pings and ARP pings afterwards.
  *
  * @author David Graeff - Rewritten
  * @author Marc Mettke - Initial contribution
@@ -57,8 +63,9 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
     // TCP port 554 (Windows share / Linux samba)
     // TCP port 1025 (XBox / MS-RPC)
     private Set<Integer> tcp_service_ports = Sets.newHashSet(80, 548, 554, 1025);
-    private Integer scannedIPcount;
+    private final AtomicInteger pendingDetections = new AtomicInteger();
     private ExecutorService executorService = null;
+    private TcpConnectSweep sweep;
     private final NetworkBindingConfiguration configuration = new NetworkBindingConfiguration();
     NetworkUtils networkUtils = new NetworkUtils();
 
@@ -106,10 +113,18 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
 
     @Override
     public void finalDetectionResult(PresenceDetectionValue value) {
+        detectionFinished();
+    }
+
+    private void detectionFinished() {
+        if (pendingDetections.decrementAndGet() == 0) {
+            logger.trace("Scan successful");
+            stopScan();
+        }
     }
 
     /**
-     * Starts the DiscoveryThread for each IP on each interface on the network
+     * Starts the discovery thread, which sweeps over every IP on each interface on the network
      */
     @Override
     protected void startScan() {
@@ -120,38 +135,80 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
         logger.trace("Starting Discovery");
 
         final Set<String> networkIPs = networkUtils.getNetworkIPs(MAXIMUM_IPS_PER_INTERFACE);
-        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
-        scannedIPcount = 0;
+        executorService = Executors.newSingleThreadExecutor();
+        sweep = new TcpConnectSweep(PING_TIMEOUT_IN_MS, TcpConnectSweep.DEFAULT_MIN_IN_FLIGHT,
+                TcpConnectSweep.DEFAULT_MAX_IN_FLIGHT);
+        final TcpConnectSweep currentSweep = sweep;
+
+        executorService.execute(() -> {
+            Thread.currentThread().setName("Discovery thread");
+            final Set<String> foundIPs = new HashSet<>();
+            try {
+                currentSweep.sweep(networkIPs, tcp_service_ports, new SweepListener() {
+                    @Override
+                    public void connected(String ip, int port) {
+                        foundIPs.add(ip);
+                        newServiceDevice(ip, port);
+                    }
 
-        for (String ip : networkIPs) {
+                    @Override
+                    public void refused(String ip, int port) {
+                        // The port is closed, but the device is present
+                        if (foundIPs.add(ip)) {
+                            newPingDevice(ip);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                logger.debug("TCP sweep failed", e);
+            }
+            logger.trace("TCP sweep of {} IPs found {} devices", networkIPs.size(), foundIPs.size());
+
+            Set<String> remainingIPs = new HashSet<>(networkIPs);
+            remainingIPs.removeAll(foundIPs);
+            performPingDetections(remainingIPs, currentSweep);
+        });
+    }
+
+    /**
+     * Queue an ICMP and ARP ping presence detection with a low priority for every given IP on the shared probe
+     * scheduler.
+     * The scan is stopped after the last detection finished.
+     */
+    private void performPingDetections(Set<String> ips, TcpConnectSweep currentSweep) {
+        pendingDetections.set(ips.size() + 1);
+        for (String ip : ips) {
+            if (currentSweep.isStopped()) {
+                // The scan has been stopped
+                return;
+            }
             final PresenceDetection s = new PresenceDetection(this, 2000);
             try {
                 s.setHostname(ip);
             } catch (UnknownHostException unknownHostException) {
                 logger.trace("Skip IP that cannot be converted to a InetAddress", unknownHostException);
+                detectionFinished();
                 continue;
             }
             s.setIOSDevice(true);
+            // Don't delay the refreshes of the things with the probes of a whole subnet
+            s.setLowPriorityProbes(true);
             s.setUseDhcpSniffing(false);
             s.setTimeout(PING_TIMEOUT_IN_MS);
             // Ping devices
             s.setUseIcmpPing(true);
+            // Cached neighbour table entries would discover devices which have left the network
+            s.setUseNeighbourTable(false);
             s.setUseArpPing(true, configuration.arpPingToolPath);
-            // TCP devices
-            s.setServicePorts(tcp_service_ports);
-
-            executorService.execute(() -> {
-                Thread.currentThread().setName("Discovery thread " + ip);
-                s.performPresenceDetection(true);
-                synchronized (scannedIPcount) {
-                    scannedIPcount += 1;
-                    if (scannedIPcount == networkIPs.size()) {
-                        logger.trace("Scan of {} IPs successful", scannedIPcount);
-                        stopScan();
-                    }
-                }
-            });
+            // TCP devices have been found by the sweep already
+            s.setServicePorts(Collections.emptySet());
+
+            if (!s.performPresenceDetection(false)) {
+                detectionFinished();
+            }
         }
+        // All detections are queued
+        detectionFinished();
     }
 
     @Override
@@ -161,11 +218,7 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
             return;
         }
 
-        try {
-            executorService.awaitTermination(PING_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Reset interrupt flag
-        }
+        sweep.stop();
         executorService.shutdown();
         executorService = null;
     }
@@ -176,7 +229,7 @@ public class NetworkDiscoveryService extends AbstractDiscoveryService implements
     }
 
     /**
-     * Submit newly discovered devices. This method is called by the spawned threads in {@link startScan}.
+     * Submit newly discovered devices. This method is called by the discovery thread in {@link startScan}.
      *
      * @param ip The device IP
      * @param tcpPort The TCP port
@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal.discovery;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link TcpConnectSweep} tries to connect to a set of TCP ports on many IP addresses with non-blocking
+ * socket channels. All connection attempts are handled by the calling thread with a single {@link Selector}.
+ *
+ * The amount of concurrent connection attempts adapts to the network: it is raised for every fast answer
+ * and lowered if answers get slow or if a host, that has already answered, does not answer in time anymore.
+ *
+ * @author David Graeff - Initial contribution
+ */
+public class TcpConnectSweep {
+    private final Logger logger = LoggerFactory.getLogger(TcpConnectSweep.class);
+
+    public static final int DEFAULT_MIN_IN_FLIGHT = 16;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 512;
+
+    /**
+     * Receives the results of a sweep. The methods are called by the sweeping thread.
+     */
+    public interface SweepListener {
+        /**
+         * A connection to the given port has been established.
+         */
+        void connected(String ip, int port);
+
+        /**
+         * The connection has been refused. There is a device with that IP, but the port is closed.
+         */
+        void refused(String ip, int port);
+    }
+
+    private final long timeoutInNS;
+    private final int minInFlight;
+    private final int maxInFlight;
+    private volatile int inFlightLimit;
+    private volatile long smoothedRttInNS;
+    private volatile boolean stopped;
+    private Selector selector;
+
+    /**
+     * Create a new sweep.
+     *
+     * @param timeoutInMS The timeout of a single connection attempt in milliseconds
+     * @param minInFlight The minimum amount of concurrent connection attempts
+     * @param maxInFlight The maximum amount of concurrent connection attempts
+     */
+    public TcpConnectSweep(int timeoutInMS, int minInFlight, int maxInFlight) {
+        this.timeoutInNS = TimeUnit.MILLISECONDS.toNanos(timeoutInMS);
+        this.minInFlight = minInFlight;
+        this.maxInFlight = maxInFlight;
+        this.inFlightLimit = minInFlight;
+    }
+
+    /**
+     * Try to connect to all ports on all given IP addresses. Returns if all connection attempts
+     * are finished or the sweep has been stopped.
+     *
+     * @param ips The IPv4 or IPv6 addresses
+     * @param ports The TCP ports
+     * @param listener Receives the results as soon as they arrive
+     * @throws IOException If the selector could not be opened
+     */
+    public void sweep(Collection<String> ips, Collection<Integer> ports, SweepListener listener) throws IOException {
+        Queue<Probe> probes = new ArrayDeque<>();
+        // The probes in start order, which is the order of their deadlines as well
+        Queue<Probe> deadlines = new ArrayDeque<>();
+        Set<String> answeredHosts = new HashSet<>();
+        int inFlight = 0;
+        for (String ip : ips) {
+            for (Integer port : ports) {
+                probes.add(new Probe(ip, port));
+            }
+        }
+
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            selector = Selector.open();
+        }
+        try {
+            while (!stopped && (!probes.isEmpty() || inFlight > 0)) {
+                // Start new connection attempts
+                while (inFlight < inFlightLimit && !probes.isEmpty()) {
+                    Probe probe = probes.poll();
+                    Boolean connected = start(probe);
+                    if (connected == null) {
+                        deadlines.add(probe);
+                        inFlight++;
+                    } else if (connected) {
+                        answered(probe);
+                        answeredHosts.add(probe.ip);
+                        listener.connected(probe.ip, probe.port);
+                    }
+                }
+
+                long waitInMS = 1;
+                if (!deadlines.isEmpty()) {
+                    long untilDeadline = deadlines.peek().deadline - System.nanoTime();
+                    waitInMS = Math.max(1, TimeUnit.NANOSECONDS.toMillis(untilDeadline));
+                }
+                selector.select(waitInMS);
+
+                // Handle answers
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Probe probe = (Probe) key.attachment();
+                    Boolean connected = finish(probe);
+                    inFlight--;
+                    if (connected != null) {
+                        answered(probe);
+                        answeredHosts.add(probe.ip);
+                        if (connected) {
+                            listener.connected(probe.ip, probe.port);
+                        } else {
+                            listener.refused(probe.ip, probe.port);
+                        }
+                    }
+                }
+
+                // Expire connection attempts
+                long now = System.nanoTime();
+                while (!deadlines.isEmpty() && (deadlines.peek().channel == null || deadlines.peek().deadline <= now)) {
+                    Probe probe = deadlines.poll();
+                    if (probe.channel != null) {
+                        close(probe);
+                        inFlight--;
+                        if (answeredHosts.contains(probe.ip)) {
+                            // A host which is present has not answered in time, we are sending too fast
+                            decreaseLimit();
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (Probe probe : deadlines) {
+                close(probe);
+            }
+            synchronized (this) {
+                selector.close();
+                selector = null;
+            }
+        }
+        logger.debug("TCP sweep finished, in-flight limit {}, smoothed round trip time {} ms", inFlightLimit,
+                TimeUnit.NANOSECONDS.toMillis(smoothedRttInNS));
+    }
+
+    /**
+     * Stop the sweep. The sweeping thread returns as soon as possible.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Return true if the sweep has been stopped.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Return the current amount of allowed concurrent connection attempts.
+     */
+    public int getInFlightLimit() {
+        return inFlightLimit;
+    }
+
+    /**
+     * Return the smoothed round trip time of all answered connection attempts in milliseconds.
+     */
+    public long getSmoothedRtt() {
+        return TimeUnit.NANOSECONDS.toMillis(smoothedRttInNS);
+    }
+
+    /**
+     * Start a non-blocking connection attempt.
+     *
+     * @return Return null if the connection attempt is pending, true if connected immediately
+     *         and false if the connection attempt could not be started.
+     */
+    private Boolean start(Probe probe) {
+        try {
+            probe.channel = SocketChannel.open();
+            probe.channel.configureBlocking(false);
+            probe.start = System.nanoTime();
+            probe.deadline = probe.start + timeoutInNS;
+            if (probe.channel.connect(new InetSocketAddress(probe.ip, probe.port))) {
+                close(probe);
+                return true;
+            }
+            probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            return null;
+        } catch (IOException e) {
+            logger.trace("Could not connect to {}:{}", probe.ip, probe.port, e);
+            close(probe);
+            return false;
+        }
+    }
+
+    /**
+     * Finish a connection attempt.
+     *
+     * @return Return true if connected, false if refused and null if the host is not reachable.
+     */
+    private Boolean finish(Probe probe) {
+        try {
+            return probe.channel.finishConnect();
+        } catch (ConnectException e) {
+            // Connection refused, there is a device on the other end though
+            return false;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            close(probe);
+        }
+    }
+
+    private void answered(Probe probe) {
+        long rtt = System.nanoTime() - probe.start;
+        smoothedRttInNS = smoothedRttInNS == 0 ? rtt : (7 * smoothedRttInNS + rtt) / 8;
+        if (rtt > timeoutInNS / 2) {
+            decreaseLimit();
+        } else if (inFlightLimit < maxInFlight) {
+            inFlightLimit++;
+        }
+    }
+
+    private void decreaseLimit() {
+        inFlightLimit = Math.max(minInFlight, inFlightLimit * 3 / 4);
+    }
+
+    private void close(Probe probe) {
+        if (probe.channel == null) {
+            return;
+        }
+        try {
+            probe.channel.close();
+        } catch (IOException ignored) {
+        }
+        probe.channel = null;
+    }
+
+    /**
+     * A connection attempt to a port of a host.
+     */
+    private static class Probe {
+        final String ip;
+        final int port;
+        SocketChannel channel;
+        long start;
+        long deadline;
+
+        Probe(String ip, int port) {
+            this.ip = ip;
+            this.port = port;
+        }
+    }
+}
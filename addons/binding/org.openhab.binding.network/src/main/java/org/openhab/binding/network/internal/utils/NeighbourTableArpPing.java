@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.network.internal.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An ARP ping without an external arping process. An empty UDP packet is sent to the destination, which makes the
+ * operating system resolve the hardware address of the destination with an ARP request. The ARP reply shows up as
+ * complete entry in the neighbour table of the kernel (/proc/net/arp on Linux).
+ *
+ * All pending pings are matched against one read of the neighbour table, therefore many destinations on many
+ * interfaces are resolved with a single poll. The table is only polled while there are pending pings.
+ *
+ * The neighbour table doesn't tell a confirmed entry from a cached one: stale entries, and entries that are being
+ * probed again, are shown as complete as well. A device which left the network is therefore still reported as present
+ * while its entry is cached. The trigger packet makes the kernel probe a stale entry, which is marked as failed a few
+ * seconds later (about 8 s with the default Linux settings). So a device that left is reported as present until the
+ * first ping after that, i.e. for up to one refresh interval plus these seconds. Presence is detected right away.
+ *
+ * @author David Graeff - Initial contribution
+ */
+public class NeighbourTableArpPing {
+    private final Logger logger = LoggerFactory.getLogger(NeighbourTableArpPing.class);
+
+    public static final Path LINUX_NEIGHBOUR_TABLE = Paths.get("/proc/net/arp");
+    private static final int POLL_INTERVAL_IN_MS = 100;
+    private static final String POOL_NAME = "network";
+    // The discard service, the packet is only sent to trigger the ARP request
+    private static final int DISCARD_PORT = 9;
+    // Flag of a neighbour table entry with a resolved hardware address
+    private static final int ATF_COM = 0x02;
+
+    private static NeighbourTableArpPing instance;
+
+    private final Path neighbourTable;
+    private final int pollIntervalInMS;
+    private final Set<PendingPing> pendingPings = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> pollJob;
+    private DatagramSocket triggerSocket;
+
+    /**
+     * Return the instance which is shared by all presence detections, so that all pending pings are resolved with the
+     * same poll of the neighbour table.
+     */
+    public static synchronized NeighbourTableArpPing getInstance() {
+        if (instance == null) {
+            instance = new NeighbourTableArpPing(LINUX_NEIGHBOUR_TABLE, POLL_INTERVAL_IN_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a new neighbour table ARP ping.
+     *
+     * @param neighbourTable The file containing the neighbour table in the format of /proc/net/arp.
+     * @param pollIntervalInMS The poll interval of the neighbour table while pings are pending.
+     */
+    public NeighbourTableArpPing(Path neighbourTable, int pollIntervalInMS) {
+        this.neighbourTable = neighbourTable;
+        this.pollIntervalInMS = pollIntervalInMS;
+        scheduler = ThreadPoolManager.getScheduledPool(POOL_NAME);
+    }
+
+    /**
+     * Return true if the neighbour table is available on this system.
+     */
+    public boolean isAvailable() {
+        return Files.isReadable(neighbourTable);
+    }
+
+    /**
+     * Perform an ARP ping.
+     *
+     * @param interfaceName An interface name, on linux for example "wlp58s0", shown by ifconfig. Must not be null.
+     * @param ipV4address The ipV4 address. Must not be null.
+     * @param timeoutInMS A timeout in milliseconds
+     * @return Return true if the device responded
+     * @throws IOException The trigger packet could not be sent
+     */
+    public boolean ping(String interfaceName, String ipV4address, int timeoutInMS)
+            throws IOException, InterruptedException {
+        PendingPing ping = new PendingPing(interfaceName, ipV4address);
+        pendingPings.add(ping);
+        try {
+            sendTrigger(InetAddress.getByName(ipV4address));
+            startPolling();
+            return ping.result.get(timeoutInMS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ignored) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pendingPings.remove(ping);
+        }
+    }
+
+    /**
+     * Return the amount of pings, which wait for a neighbour table entry.
+     */
+    public int getPendingPings() {
+        return pendingPings.size();
+    }
+
+    private void sendTrigger(InetAddress address) throws IOException {
+        DatagramSocket socket;
+        synchronized (this) {
+            if (triggerSocket == null || triggerSocket.isClosed()) {
+                triggerSocket = new DatagramSocket();
+            }
+            socket = triggerSocket;
+        }
+        socket.send(new DatagramPacket(new byte[0], 0, address, DISCARD_PORT));
+    }
+
+    private synchronized void startPolling() {
+        if (pollJob == null) {
+            pollJob = scheduler.scheduleWithFixedDelay(this::poll, 0, pollIntervalInMS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Read the neighbour table once and complete all pending pings with a resolved entry.
+     */
+    private void poll() {
+        synchronized (this) {
+            if (pendingPings.isEmpty()) {
+                pollJob.cancel(false);
+                pollJob = null;
+                return;
+            }
+        }
+
+        Map<String, String> resolved;
+        try {
+            resolved = readNeighbourTable();
+        } catch (IOException | RuntimeException e) {
+            // an exception must not escape, it would cancel the poll job without resetting it
+            logger.debug("Could not read the neighbour table {}", neighbourTable, e);
+            for (PendingPing ping : pendingPings) {
+                ping.result.completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (PendingPing ping : pendingPings) {
+            if (ping.interfaceName.equals(resolved.get(ping.ipV4address))) {
+                ping.result.complete(true);
+            }
+        }
+    }
+
+    /**
+     * Return the resolved entries of the neighbour table as map of IP address to interface name.
+     */
+    Map<String, String> readNeighbourTable() throws IOException {
+        Map<String, String> resolved = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(neighbourTable, StandardCharsets.US_ASCII)) {
+            // Skip the header line: IP address, HW type, Flags, HW address, Mask, Device
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.trim().split("\\s+");
+                if (columns.length < 6) {
+                    continue;
+                }
+                try {
+                    if ((Integer.decode(columns[2]) & ATF_COM) != 0) {
+                        resolved.put(columns[0], columns[5]);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Not a neighbour table entry
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private static class PendingPing {
+        final String interfaceName;
+        final String ipV4address;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingPing(String interfaceName, String ipV4address) {
+            this.interfaceName = interfaceName;
+            this.ipV4address = ipV4address;
+        }
+    }
+}
@@ -216,6 +216,14 @@ public class NetworkUtils {
         return ArpPingUtilEnum.UNKNOWN_TOOL;
     }
 
+    /**
+     * Return {@link ArpPingUtilEnum#NEIGHBOUR_TABLE} if the operating system provides a neighbour table for the in-process
+     * ARP ping, otherwise null.
+     */
+    public ArpPingUtilEnum determineNeighbourTableARPpingMethod() {
+        return NeighbourTableArpPing.getInstance().isAvailable() ? ArpPingUtilEnum.NEIGHBOUR_TABLE : null;
+    }
+
     public enum IpPingMethodEnum {
         JAVA_PING,
         WINDOWS_PING,
@@ -263,7 +271,8 @@ public class NetworkUtils {
         UNKNOWN_TOOL,
         IPUTILS_ARPING,
         THOMAS_HABERT_ARPING,
-        THOMAS_HABERT_ARPING_WITHOUT_TIMEOUT
+        THOMAS_HABERT_ARPING_WITHOUT_TIMEOUT,
+        NEIGHBOUR_TABLE
     }
 
     /**
@@ -271,6 +280,7 @@ public class NetworkUtils {
      * There exist two different arping utils with the same name unfortunatelly.
      * * iputils arping which is sometimes preinstalled on fedora/ubuntu and the
      * * https://github.com/ThomasHabets/arping which also works on Windows and MacOS.
+     * No process is executed for {@link ArpPingUtilEnum#NEIGHBOUR_TABLE}, see {@link NeighbourTableArpPing}.
      *
      * @param arpUtilPath The arping absolute path including filename. Example: "arping" or "/usr/bin/arping" or
      *            "C:\something\arping.exe"
@@ -282,6 +292,9 @@ public class NetworkUtils {
      */
     public boolean nativeARPPing(ArpPingUtilEnum arpingTool, String arpUtilPath, String interfaceName,
             String ipV4address, int timeoutInMS) throws IOException, InterruptedException {
+        if (arpingTool == ArpPingUtilEnum.NEIGHBOUR_TABLE) {
+            return NeighbourTableArpPing.getInstance().ping(interfaceName, ipV4address, timeoutInMS);
+        }
         if (arpUtilPath == null || arpingTool == null || arpingTool == ArpPingUtilEnum.UNKNOWN_TOOL) {
             return false;
         }
@@ -33,4 +33,15 @@ public interface Homekit {
      * @param allow boolean indicating whether or not to allow unauthenticated requests
      */
     void allowUnauthenticatedRequests(boolean allow);
+
+    /**
+     * Returns the number of characteristic change notifications that have been sent to HomeKit clients
+     */
+    long getDeliveredNotifications();
+
+    /**
+     * Returns the number of characteristic changes that have been coalesced into a later notification, because
+     * they occurred within the minimum notification interval
+     */
+    long getSuppressedNotifications();
 }
@@ -39,13 +39,18 @@ class HomekitAccessoryRegistry {
 
     private final Logger logger = LoggerFactory.getLogger(HomekitAccessoryRegistry.class);
 
-    public void remove(HomekitTaggedItem taggedItem) {
+    public synchronized void remove(HomekitTaggedItem taggedItem) {
+        String itemName = taggedItem.getItem().getName();
+        pendingGroupedAccessories.remove(itemName);
+        pendingCharacteristics.removeIf(characteristic -> characteristic.getItem().getName().equals(itemName));
         Iterator<HomekitAccessory> i = createdAccessories.iterator();
         while (i.hasNext()) {
             HomekitAccessory accessory = i.next();
             if (accessory.getId() == taggedItem.getId()) {
                 logger.debug("Removed accessory {}", accessory.getId());
-                bridge.removeAccessory(accessory);
+                if (bridge != null) {
+                    bridge.removeAccessory(accessory);
+                }
                 i.remove();
             }
         }
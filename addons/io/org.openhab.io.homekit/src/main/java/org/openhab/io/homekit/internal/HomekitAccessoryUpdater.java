@@ -10,7 +10,12 @@ package org.openhab.io.homekit.internal;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.items.GenericItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.StateChangeListener;
@@ -26,12 +31,41 @@ import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
  * Homekit library takes care of insuring only a single subscription exists for
  * each accessory.
  *
+ * Notifications of a characteristic are sent at most once per minimum notification interval. Changes within the
+ * interval are coalesced into a single notification at its end. Homekit reads the current value of the item when it
+ * is notified, so the last state wins.
+ *
  * @author Andy Lintner
  */
 public class HomekitAccessoryUpdater {
 
     private Logger logger = LoggerFactory.getLogger(HomekitAccessoryUpdater.class);
     private final ConcurrentMap<ItemKey, Subscription> subscriptionsByName = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool("homekit");
+    private volatile long minimumNotificationInterval = TimeUnit.MILLISECONDS.toNanos(500);
+    private final AtomicLong deliveredNotifications = new AtomicLong();
+    private final AtomicLong suppressedNotifications = new AtomicLong();
+
+    /**
+     * Sets the minimum time between two notifications of the same characteristic, 0 to notify every change
+     */
+    public void setMinimumNotificationInterval(long milliseconds) {
+        this.minimumNotificationInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(milliseconds, 0));
+    }
+
+    /**
+     * Returns the number of notifications sent to Homekit
+     */
+    public long getDeliveredNotifications() {
+        return deliveredNotifications.get();
+    }
+
+    /**
+     * Returns the number of changes that have been coalesced into another notification
+     */
+    public long getSuppressedNotifications() {
+        return suppressedNotifications.get();
+    }
 
     public void subscribe(GenericItem item, HomekitCharacteristicChangeCallback callback) {
         subscribe(item, null, callback);
@@ -41,16 +75,18 @@ public class HomekitAccessoryUpdater {
         if (item == null) {
             return;
         }
-        ItemKey itemKey = new ItemKey(item, key);
-        if (subscriptionsByName.containsKey(itemKey)) {
-            logger.error("Received duplicate subscription on {}", item.getName());
-        }
-        subscriptionsByName.compute(itemKey, (k, v) -> {
+        subscriptionsByName.compute(new ItemKey(item.getName(), key), (k, v) -> {
             if (v != null) {
-                logger.error("Received duplicate subscription on {}", item.getName());
-                unsubscribe(item, key);
+                if (v.item == item) {
+                    logger.error("Received duplicate subscription on {}", item.getName());
+                } else {
+                    // the item has been replaced in the registry, the subscription moves to the new instance
+                    logger.debug("Moving subscription on {} to the updated item", item.getName());
+                }
+                v.item.removeStateChangeListener(v);
+                v.cancel();
             }
-            Subscription subscription = (changedItem, oldState, newState) -> callback.changed();
+            Subscription subscription = new Subscription(item, callback);
             item.addStateChangeListener(subscription);
             return subscription;
         });
@@ -64,30 +100,87 @@ public class HomekitAccessoryUpdater {
         if (item == null) {
             return;
         }
-        subscriptionsByName.computeIfPresent(new ItemKey(item, key), (k, v) -> {
+        subscriptionsByName.computeIfPresent(new ItemKey(item.getName(), key), (k, v) -> {
+            if (v.item != item) {
+                // subscription of an updated instance of the item, which is still in use
+                return v;
+            }
             item.removeStateChangeListener(v);
+            v.cancel();
             return null;
         });
     }
 
-    @FunctionalInterface
-    private static interface Subscription extends StateChangeListener {
+    private class Subscription implements StateChangeListener {
+        private final GenericItem item;
+        private final HomekitCharacteristicChangeCallback callback;
+        private long lastNotification;
+        private boolean notified;
+        private ScheduledFuture<?> pendingNotification;
+
+        public Subscription(GenericItem item, HomekitCharacteristicChangeCallback callback) {
+            this.item = item;
+            this.callback = callback;
+        }
 
         @Override
-        void stateChanged(Item item, State oldState, State newState);
+        public void stateChanged(Item item, State oldState, State newState) {
+            synchronized (this) {
+                if (pendingNotification != null) {
+                    suppressedNotifications.incrementAndGet();
+                    return;
+                }
+                long interval = minimumNotificationInterval;
+                long delay = notified ? lastNotification + interval - System.nanoTime() : 0;
+                if (interval > 0 && delay > 0) {
+                    pendingNotification = scheduler.schedule(this::notifyPending, delay, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                lastNotification = System.nanoTime();
+                notified = true;
+            }
+            notifyCallback();
+        }
 
         @Override
-        default void stateUpdated(Item item, State state) {
+        public void stateUpdated(Item item, State state) {
             // Do nothing on non-change update
         }
+
+        private void notifyPending() {
+            synchronized (this) {
+                if (pendingNotification == null) {
+                    return;
+                }
+                pendingNotification = null;
+                lastNotification = System.nanoTime();
+            }
+            notifyCallback();
+        }
+
+        private void notifyCallback() {
+            deliveredNotifications.incrementAndGet();
+            try {
+                callback.changed();
+            } catch (Exception e) {
+                logger.debug("Could not notify homekit of a changed characteristic: {}", e.getMessage(), e);
+            }
+        }
+
+        public synchronized void cancel() {
+            if (pendingNotification != null) {
+                pendingNotification.cancel(false);
+                pendingNotification = null;
+            }
+        }
     }
 
     private static class ItemKey {
-        public GenericItem item;
+        public String itemName;
         public String key;
 
-        public ItemKey(GenericItem item, String key) {
-            this.item = item;
+        public ItemKey(String itemName, String key) {
+            this.itemName = itemName;
             this.key = key;
         }
 
@@ -95,7 +188,7 @@ public class HomekitAccessoryUpdater {
         public int hashCode() {
             final int prime = 31;
             int result = 1;
-            result = prime * result + ((item == null) ? 0 : item.hashCode());
+            result = prime * result + ((itemName == null) ? 0 : itemName.hashCode());
             result = prime * result + ((key == null) ? 0 : key.hashCode());
             return result;
         }
@@ -112,11 +205,11 @@ public class HomekitAccessoryUpdater {
                 return false;
             }
             ItemKey other = (ItemKey) obj;
-            if (item == null) {
-                if (other.item != null) {
+            if (itemName == null) {
+                if (other.itemName != null) {
                     return false;
                 }
-            } else if (!item.equals(other.item)) {
+            } else if (!itemName.equals(other.itemName)) {
                 return false;
             }
             if (key == null) {
@@ -8,8 +8,22 @@
  */
 package org.openhab.io.homekit.internal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.items.GroupItem;
 import org.eclipse.smarthome.core.items.Item;
 import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
@@ -23,50 +37,53 @@ import com.beowulfe.hap.HomekitRoot;
  * Listens for changes to the item registry. When changes are detected, check
  * for Homekit tags and, if present, add the items to the HomekitAccessoryRegistry.
  *
+ * Changes are collected for {@link #UPDATE_DELAY} milliseconds and then applied together. Accessories are only
+ * recreated for items that have been added, removed or replaced in the registry, or whose HomeKit type has changed.
+ * Items that are not affected by the changes keep their accessories. A grouped accessory is recreated with all its
+ * characteristics, if the group or one of them has changed.
+ *
  * @author Andy Lintner
  */
 public class HomekitChangeListener implements ItemRegistryChangeListener {
 
+    private static final long UPDATE_DELAY = 500;
+
     private ItemRegistry itemRegistry;
     private HomekitAccessoryUpdater updater = new HomekitAccessoryUpdater();
     private Logger logger = LoggerFactory.getLogger(HomekitChangeListener.class);
     private final HomekitAccessoryRegistry accessoryRegistry = new HomekitAccessoryRegistry();
     private HomekitSettings settings;
+    private final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool("homekit");
+    // tagged items the accessories have been created from, by item name
+    private final Map<String, HomekitTaggedItem> taggedItems = new HashMap<>();
+    // names of the items changed since the last update
+    private final Set<String> pendingChanges = new LinkedHashSet<>();
+    private ScheduledFuture<?> pendingUpdate;
 
     @Override
-    public synchronized void added(Item item) {
-        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
-        if (taggedItem.isTagged()) {
-            if (taggedItem.isRootDevice()) {
-                createRootDevice(taggedItem);
-            }
-            if (taggedItem.isCharacteristic()) {
-                createCharacteristic(taggedItem);
-            }
-        }
+    public void added(Item item) {
+        scheduleUpdate(Collections.singleton(item.getName()));
     }
 
     @Override
     public void allItemsChanged(Collection<String> oldItemNames) {
-        clearAccessories();
+        scheduleUpdate(oldItemNames);
+        scheduleUpdate(itemRegistry.getAll().stream().map(Item::getName).collect(Collectors.toList()));
     }
 
     @Override
-    public synchronized void removed(Item item) {
-        HomekitTaggedItem taggedItem = new HomekitTaggedItem(item, itemRegistry);
-        if (taggedItem.isTagged()) {
-            accessoryRegistry.remove(taggedItem);
-        }
+    public void removed(Item item) {
+        scheduleUpdate(Collections.singleton(item.getName()));
     }
 
     @Override
     public void updated(Item oldElement, Item element) {
-        removed(oldElement);
-        added(element);
+        scheduleUpdate(Arrays.asList(oldElement.getName(), element.getName()));
     }
 
     public synchronized void clearAccessories() {
         accessoryRegistry.clear();
+        taggedItems.clear();
     }
 
     public synchronized void setBridge(HomekitRoot bridge) {
@@ -76,21 +93,125 @@ public class HomekitChangeListener implements ItemRegistryChangeListener {
     public synchronized void setItemRegistry(ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
         itemRegistry.addRegistryChangeListener(this);
-        itemRegistry.getAll().forEach(item -> added(item));
+        update(itemRegistry.getAll().stream().map(Item::getName).collect(Collectors.toList()));
     }
 
     public void setUpdater(HomekitAccessoryUpdater updater) {
         this.updater = updater;
     }
 
+    public HomekitAccessoryUpdater getUpdater() {
+        return updater;
+    }
+
     public void setSettings(HomekitSettings settings) {
         this.settings = settings;
+        updater.setMinimumNotificationInterval(settings.getMinimumNotificationInterval());
     }
 
-    public void stop() {
+    public synchronized void stop() {
         if (this.itemRegistry != null) {
             this.itemRegistry.removeRegistryChangeListener(this);
         }
+        if (pendingUpdate != null) {
+            pendingUpdate.cancel(false);
+            pendingUpdate = null;
+        }
+        pendingChanges.clear();
+    }
+
+    private synchronized void scheduleUpdate(Collection<String> itemNames) {
+        pendingChanges.addAll(itemNames);
+        if (pendingUpdate == null) {
+            pendingUpdate = scheduler.schedule(this::applyPendingChanges, UPDATE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void applyPendingChanges() {
+        pendingUpdate = null;
+        if (pendingChanges.isEmpty() || itemRegistry == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<String> itemNames = new ArrayList<>(pendingChanges);
+        pendingChanges.clear();
+        int changed = update(itemNames);
+        logger.debug("Processed {} changed items in {} ms, {} accessories changed", itemNames.size(),
+                (System.nanoTime() - start) / 1000000, changed);
+    }
+
+    /**
+     * Brings the accessories of the given items in line with the item registry. Grouped accessories are recreated
+     * together with all their characteristics, if the group or one of its characteristic items has changed.
+     *
+     * @return the number of items whose accessories have been changed
+     */
+    private int update(Collection<String> itemNames) {
+        int changed = 0;
+        // tagged items to create accessories or characteristics for
+        Set<String> created = new LinkedHashSet<>();
+        // groups whose accessories have to be recreated
+        Set<String> changedGroups = new LinkedHashSet<>();
+        for (String itemName : itemNames) {
+            Item item = itemRegistry.get(itemName);
+            HomekitTaggedItem previous = taggedItems.get(itemName);
+            HomekitTaggedItem current = item != null ? new HomekitTaggedItem(item, itemRegistry) : null;
+            if (current != null && !current.isTagged()) {
+                current = null;
+            }
+            if (previous == null && current == null) {
+                continue;
+            }
+            if (previous != null && current != null && previous.isSameAccessory(current)) {
+                continue;
+            }
+            changed++;
+            if (previous != null) {
+                taggedItems.remove(itemName);
+                accessoryRegistry.remove(previous);
+                if (previous.isCharacteristic()) {
+                    changedGroups.addAll(previous.getItem().getGroupNames());
+                }
+            }
+            if (current != null) {
+                taggedItems.put(itemName, current);
+                created.add(itemName);
+                if (current.isCharacteristic()) {
+                    changedGroups.addAll(current.getItem().getGroupNames());
+                }
+            }
+            if (item instanceof GroupItem) {
+                changedGroups.add(itemName);
+            }
+        }
+        for (String groupName : changedGroups) {
+            HomekitTaggedItem group = taggedItems.get(groupName);
+            if (group == null || !group.isRootDevice()) {
+                continue;
+            }
+            if (created.add(groupName)) {
+                accessoryRegistry.remove(group);
+            }
+            for (HomekitTaggedItem taggedItem : taggedItems.values()) {
+                if (taggedItem.isCharacteristic() && taggedItem.getItem().getGroupNames().contains(groupName)) {
+                    created.add(taggedItem.getItem().getName());
+                }
+            }
+        }
+        // root devices first, so that the characteristics find their groups
+        for (String itemName : created) {
+            HomekitTaggedItem taggedItem = taggedItems.get(itemName);
+            if (taggedItem.isRootDevice()) {
+                createRootDevice(taggedItem);
+            }
+        }
+        for (String itemName : created) {
+            HomekitTaggedItem taggedItem = taggedItems.get(itemName);
+            if (taggedItem.isCharacteristic()) {
+                createCharacteristic(taggedItem);
+            }
+        }
+        return changed;
     }
 
     private void createRootDevice(HomekitTaggedItem taggedItem) {
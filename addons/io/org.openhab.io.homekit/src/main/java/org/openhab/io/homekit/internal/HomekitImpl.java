@@ -77,6 +77,8 @@ public class HomekitImpl implements Homekit {
 
         changeListener.setBridge(null);
         changeListener.stop();
+        logger.debug("Sent {} homekit notifications, {} changes coalesced", getDeliveredNotifications(),
+                getSuppressedNotifications());
     }
 
     @Override
@@ -93,6 +95,16 @@ public class HomekitImpl implements Homekit {
         }
     }
 
+    @Override
+    public long getDeliveredNotifications() {
+        return changeListener.getUpdater().getDeliveredNotifications();
+    }
+
+    @Override
+    public long getSuppressedNotifications() {
+        return changeListener.getUpdater().getSuppressedNotifications();
+    }
+
     private void start() throws IOException, InvalidAlgorithmParameterException {
         homekit = new HomekitServer(settings.getNetworkInterface(), settings.getPort());
         bridge = homekit.createBridge(new HomekitAuthInfoImpl(storageService, settings.getPin()), settings.getName(),
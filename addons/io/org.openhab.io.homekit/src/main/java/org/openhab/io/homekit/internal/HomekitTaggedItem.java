@@ -99,6 +99,18 @@ public class HomekitTaggedItem {
         return id;
     }
 
+    /**
+     * Checks whether an accessory created from the other tagged item would be the same as one created from this
+     * tagged item, i.e. both wrap the same item instance with the same id and HomeKit types. Accessories hold on to
+     * the item instance they have been created from, so an item that has been replaced in the registry always needs
+     * a new accessory. The types of an unchanged item still change, if it is added to or removed from a grouped
+     * accessory.
+     */
+    public boolean isSameAccessory(HomekitTaggedItem other) {
+        return item == other.getItem() && id == other.id && homekitDeviceType == other.homekitDeviceType
+                && homekitCharacteristicType == other.homekitCharacteristicType;
+    }
+
     private int calculateId(Item item) {
         int id = new HashCodeBuilder().append(item.getName()).hashCode();
         if (id < 0) {
@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.hueemulation.internal;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ArrayUtils;
+import org.eclipse.smarthome.core.items.Item;
+import org.eclipse.smarthome.core.items.ItemRegistry;
+import org.eclipse.smarthome.core.items.ItemRegistryChangeListener;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.HSBType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.types.State;
+import org.openhab.io.hueemulation.internal.api.HueDevice;
+import org.openhab.io.hueemulation.internal.api.HueState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Index of all items tagged for voice, maintained from the changes of the item registry.
+ * Lights are read without locking, the JSON of a light is cached until the state of its item changes.
+ *
+ * @author Dan Cunningham - Initial Contribution
+ *
+ */
+class HueDeviceIndex implements ItemRegistryChangeListener {
+    private final Logger logger = LoggerFactory.getLogger(HueDeviceIndex.class);
+    private static final String[] SUPPORTED_TAGS = new String[] { "Switchable", "Lighting" };
+    private final Gson gson = new Gson();
+    private final File itemFile;
+    private ItemRegistry itemRegistry;
+    private boolean loaded = false;
+    // deviceMap maps a Hue numeric id to a Item Name, ordered by that id
+    private final TreeMap<Integer, String> deviceMap = new TreeMap<>();
+    // maps an Item Name to its Hue numeric id
+    private final Map<String, Integer> ids = new HashMap<>();
+    // lights of all tagged items in the registry, ordered by their id
+    private final ConcurrentNavigableMap<Integer, Light> lights = new ConcurrentSkipListMap<>();
+
+    /**
+     * A tagged item and the JSON of its last seen state
+     */
+    private static class Light {
+        final Integer id;
+        final Item item;
+        volatile Snapshot snapshot;
+
+        Light(Integer id, Item item) {
+            this.id = id;
+            this.item = item;
+        }
+    }
+
+    private static class Snapshot {
+        final State state;
+        final String json;
+
+        Snapshot(State state, String json) {
+            this.state = state;
+            this.json = json;
+        }
+    }
+
+    HueDeviceIndex(File itemFile) {
+        this.itemFile = itemFile;
+    }
+
+    /**
+     * Indexes all items of the registry and listens for its changes
+     */
+    synchronized void setItemRegistry(ItemRegistry itemRegistry) {
+        if (this.itemRegistry != null) {
+            this.itemRegistry.removeRegistryChangeListener(this);
+        }
+        this.itemRegistry = itemRegistry;
+        if (!loaded) {
+            load();
+        }
+        itemRegistry.addRegistryChangeListener(this);
+        indexAll();
+    }
+
+    synchronized void unsetItemRegistry(ItemRegistry itemRegistry) {
+        if (this.itemRegistry == itemRegistry) {
+            itemRegistry.removeRegistryChangeListener(this);
+            this.itemRegistry = null;
+            lights.clear();
+        }
+    }
+
+    @Override
+    public synchronized void added(Item item) {
+        if (index(item)) {
+            save();
+        }
+    }
+
+    @Override
+    public synchronized void removed(Item item) {
+        Integer id = ids.remove(item.getName());
+        if (id != null) {
+            lights.remove(id);
+            deviceMap.remove(id);
+            save();
+        }
+    }
+
+    @Override
+    public synchronized void updated(Item oldItem, Item item) {
+        if (index(item)) {
+            save();
+        }
+    }
+
+    @Override
+    public synchronized void allItemsChanged(Collection<String> oldItemNames) {
+        lights.clear();
+        indexAll();
+    }
+
+    /**
+     * Returns the ids of all lights
+     */
+    NavigableSet<Integer> getIds() {
+        return lights.keySet();
+    }
+
+    /**
+     * Returns the name of the item of a light or null, if there is no such light
+     */
+    String getItemName(Integer id) {
+        Light light = lights.get(id);
+        return light != null ? light.item.getName() : null;
+    }
+
+    /**
+     * Returns the JSON of a single light or null, if there is no such light
+     */
+    String getLightJson(Integer id) {
+        Light light = lights.get(id);
+        return light != null ? toJson(light) : null;
+    }
+
+    /**
+     * Returns the JSON of all lights, an object with the lights by their id
+     */
+    String getLightsJson() {
+        StringBuilder json = new StringBuilder(lights.size() * 512 + 2).append('{');
+        for (Light light : lights.values()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(light.id).append("\":").append(toJson(light));
+        }
+        return json.append('}').toString();
+    }
+
+    private String toJson(Light light) {
+        State state = light.item.getState();
+        Snapshot snapshot = light.snapshot;
+        // states are immutable, so the JSON is valid as long as the item has the same state object
+        if (snapshot == null || snapshot.state != state) {
+            snapshot = new Snapshot(state, gson.toJson(itemToDevice(light.item, state, light.id)));
+            light.snapshot = snapshot;
+        }
+        return snapshot.json;
+    }
+
+    /**
+     * Converts an Item to a HueDevice
+     */
+    private HueDevice itemToDevice(Item item, State itemState, Integer key) {
+        HueState hueState;
+        if (itemState instanceof HSBType) {
+            HSBType color = (HSBType) itemState;
+            hueState = new HueState(color);
+        } else if (itemState instanceof DecimalType) {
+            short bri = (short) ((((DecimalType) itemState).intValue() * 255) / 100);
+            hueState = new HueState(bri);
+        } else if (itemState instanceof OnOffType) {
+            short bri = (short) (((OnOffType) itemState) == OnOffType.ON ? 255 : 0);
+            hueState = new HueState(bri);
+        } else {
+            hueState = new HueState((short) 0);
+        }
+
+        HueDevice d = new HueDevice(hueState, item.getLabel(), key);
+        return d;
+    }
+
+    private void indexAll() {
+        boolean modified = false;
+        for (Item item : itemRegistry.getItems()) {
+            modified |= index(item);
+        }
+        if (modified) {
+            save();
+        }
+        logger.debug("Indexed {} Hue devices", lights.size());
+    }
+
+    /**
+     * Adds, replaces or removes the light of an item
+     *
+     * @return true if the device map has been modified
+     */
+    private boolean index(Item item) {
+        String name = item.getName();
+        Integer id = ids.get(name);
+        if (!isTagged(item)) {
+            if (id == null) {
+                return false;
+            }
+            ids.remove(name);
+            lights.remove(id);
+            deviceMap.remove(id);
+            return true;
+        }
+        boolean modified = false;
+        if (id == null) {
+            // hue devices are assigned a numeric number starting with 1, if a device is
+            // removed that number is not used again. Not sure how high this id can get
+            // not worrying about it here
+            id = deviceMap.isEmpty() ? 1 : new Integer(deviceMap.lastKey().intValue() + 1);
+            deviceMap.put(id, name);
+            ids.put(name, id);
+            modified = true;
+        }
+        lights.put(id, new Light(id, item));
+        return modified;
+    }
+
+    private boolean isTagged(Item item) {
+        for (String tag : item.getTags()) {
+            if (ArrayUtils.contains(SUPPORTED_TAGS, tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads the device map from disk
+     */
+    private void load() {
+        loaded = true;
+        if (!itemFile.exists()) {
+            return;
+        }
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new FileReader(itemFile));
+            Map<Integer, String> tmpMap = gson.fromJson(reader, new TypeToken<Map<Integer, String>>() {
+            }.getType());
+            if (tmpMap != null) {
+                deviceMap.putAll(tmpMap);
+                for (Map.Entry<Integer, String> entry : tmpMap.entrySet()) {
+                    ids.put(entry.getValue(), entry.getKey());
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Could not load item cache", e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Persists the device map to disk
+     */
+    private void save() {
+        JsonWriter writer = null;
+        try {
+            itemFile.getParentFile().mkdirs();
+            writer = new JsonWriter(new FileWriter(itemFile));
+            gson.toJson(deviceMap, new TypeToken<Map<Integer, String>>() {
+            }.getType(), writer);
+        } catch (IOException e) {
+            logger.error("Could not persist item cache", e);
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+}
@@ -9,22 +9,39 @@
 package org.openhab.io.hueemulation.internal;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
+import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
-import java.net.SocketException;
-import java.util.Enumeration;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Advertises a Hue UPNP compatible bridge
+ * Advertises a Hue UPNP compatible bridge.
+ *
+ * A single non-blocking channel joins the SSDP multicast group on every usable IPv4 interface (or only on the one of
+ * the configured discovery IP). Each M-SEARCH is answered with response packets that are built once per interface
+ * address. Repeated searches of the same client within {@link #DUPLICATE_WINDOW} are ignored, and at most
+ * {@link #MAX_SEARCHES_PER_SECOND} searches are answered per second, so search storms of several devices cost a
+ * constant amount of work.
  *
  * @author Dan Cunningham
  *
@@ -35,13 +52,26 @@ public class HueEmulationUpnpServer extends Thread {
     // jUPNP shares port 1900, but since this is multicast, we can also bind to it
     private static final int UPNP_PORT_RECV = 1900;
     private static final String MULTI_ADDR = "239.255.255.250";
-    private boolean running;
+    // searches of the same client within this time (ms) are answered only once
+    private static final long DUPLICATE_WINDOW = 1000;
+    private static final int MAX_SEARCHES_PER_SECOND = 20;
+    private static final int MAX_CLIENTS = 256;
+    private volatile boolean running;
+    private volatile Selector selector;
     private String discoPath;
     private String usn;
-    private InetAddress address;
+    private volatile InetAddress address;
     private String discoveryIp;
     private int webPort;
 
+    // prebuilt response packets by the interface they are sent for
+    private volatile List<InterfaceAddress> interfaceAddresses = Collections.emptyList();
+    private final Map<InetAddress, byte[][]> responses = new HashMap<>();
+    // last answered search by client, oldest first
+    private final Map<SocketAddress, Long> lastSearches = new LinkedHashMap<>();
+    private long rateWindowStart;
+    private int rateWindowCount;
+
     private String discoString = "HTTP/1.1 200 OK\r\n" + "HOST: %s:%d\r\n" + "EXT:\r\n"
             + "CACHE-CONTROL: max-age=100\r\n" + "LOCATION: %s\r\n"
             + "SERVER: FreeRTOS/7.4.2, UPnP/1.0, IpBridge/1.15.0\r\n" + "hue-bridgeid: %s\r\n" + "ST: %s\r\n"
@@ -55,9 +85,10 @@ public class HueEmulationUpnpServer extends Thread {
      * @param usn
      *            The unique USN id for this server
      * @param discoveryIP
-     *            Optional IP to use advertise for UPNP, if null the first available non localhost IP will be used
+     *            Optional IP to use advertise for UPNP, if null all available non localhost IPs will be used
      */
     public HueEmulationUpnpServer(String discoPath, String usn, int webPort, String discoveryIP) {
+        super("Hue Emulation UPNP server");
         this.running = true;
         this.discoPath = discoPath;
         this.usn = usn;
@@ -70,73 +101,56 @@ public class HueEmulationUpnpServer extends Thread {
      */
     public void shutdown() {
         this.running = false;
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
     }
 
     @Override
     public void run() {
-        MulticastSocket recvSocket = null;
+        DatagramChannel recvChannel = null;
         // since jupnp shares port 1900, lets use a different port to send UDP packets on just to be safe.
-        DatagramSocket sendSocket = null;
-        byte[] buf = new byte[1000];
-        DatagramPacket recv = new DatagramPacket(buf, buf.length);
+        DatagramChannel sendChannel = null;
+        ByteBuffer buf = ByteBuffer.allocate(1000);
         while (running) {
             try {
-                if (discoveryIp != null && discoveryIp.trim().length() > 0) {
-                    address = InetAddress.getByName(discoveryIp);
-                } else {
-                    Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-                    while (interfaces.hasMoreElements()) {
-                        NetworkInterface ni = interfaces.nextElement();
-                        Enumeration<InetAddress> addresses = ni.getInetAddresses();
-                        while (addresses.hasMoreElements()) {
-                            InetAddress addr = addresses.nextElement();
-                            if (addr instanceof Inet4Address && !addr.isLoopbackAddress()) {
-                                address = addr;
-                                break;
-                            }
-                        }
+                selector = Selector.open();
+                List<NetworkInterface> interfaces = findInterfaces();
+                InetAddress group = InetAddress.getByName(MULTI_ADDR);
+                recvChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                recvChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                recvChannel.bind(new InetSocketAddress(UPNP_PORT_RECV));
+                for (NetworkInterface ni : interfaces) {
+                    try {
+                        recvChannel.join(group, ni);
+                        logger.debug("Listening for UPNP discovery on {}", ni.getName());
+                    } catch (IOException e) {
+                        logger.debug("Could not join UPNP group on {}: {}", ni.getName(), e.getMessage());
                     }
                 }
-                InetSocketAddress socketAddr = new InetSocketAddress(MULTI_ADDR, UPNP_PORT_RECV);
-                recvSocket = new MulticastSocket(UPNP_PORT_RECV);
-                recvSocket.joinGroup(socketAddr, NetworkInterface.getByInetAddress(address));
-                sendSocket = new DatagramSocket();
+                recvChannel.configureBlocking(false);
+                recvChannel.register(selector, SelectionKey.OP_READ);
+                sendChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+                sendChannel.configureBlocking(false);
                 while (running) {
-                    recvSocket.receive(recv);
-                    if (recv.getLength() > 0) {
-                        String data = new String(recv.getData());
-                        logger.trace("Got SSDP Discovery packet from {}:{}", recv.getAddress().getHostAddress(),
-                                recv.getPort());
-                        if (data.startsWith("M-SEARCH")) {
-                            String hueId = usn.substring(usn.length() - 12).toUpperCase();
-
-                            String[] stVersions = { "upnp:rootdevice", "urn:schemas-upnp-org:device:basic:1",
-                                    "uuid:" + usn };
-
-                            for (String st : stVersions) {
-                                String msg = String.format(discoString, MULTI_ADDR, UPNP_PORT_RECV,
-                                        "http://" + address.getHostAddress().toString() + ":" + webPort + discoPath,
-                                        hueId, st, usn);
-
-                                DatagramPacket response = new DatagramPacket(msg.getBytes(), msg.length(),
-                                        recv.getAddress(), recv.getPort());
-                                try {
-                                    logger.trace("Sending to {} : {}", recv.getAddress().getHostAddress(), msg);
-                                    sendSocket.send(response);
-                                } catch (IOException e) {
-                                    logger.debug("Could not send UPNP response: {}", e.getMessage());
-                                }
-                            }
+                    selector.select();
+                    selector.selectedKeys().clear();
+                    SocketAddress sender;
+                    while (running && (sender = recvChannel.receive(buf)) != null) {
+                        buf.flip();
+                        if (buf.remaining() > 0) {
+                            handlePacket(buf, (InetSocketAddress) sender, sendChannel);
                         }
+                        buf.clear();
                     }
                 }
-            } catch (SocketException e) {
-                logger.error("Socket error with UPNP server", e);
             } catch (IOException e) {
                 logger.error("IO Error with UPNP server", e);
             } finally {
-                IOUtils.closeQuietly(recvSocket);
-                IOUtils.closeQuietly(sendSocket);
+                IOUtils.closeQuietly(recvChannel);
+                IOUtils.closeQuietly(sendChannel);
+                IOUtils.closeQuietly(selector);
                 if (running) {
                     try {
                         Thread.sleep(3000);
@@ -147,7 +161,171 @@ public class HueEmulationUpnpServer extends Thread {
         }
     }
 
-    public InetAddress getAddress() {
+    /**
+     * Returns the address to advertise to a client
+     *
+     * @param local
+     *            The local address the client has connected to
+     */
+    public InetAddress getAddress(InetAddress local) {
+        for (InterfaceAddress ia : interfaceAddresses) {
+            if (ia.getAddress().equals(local)) {
+                return local;
+            }
+        }
         return address;
     }
+
+    private void handlePacket(ByteBuffer packet, InetSocketAddress sender, DatagramChannel sendChannel) {
+        logger.trace("Got SSDP Discovery packet from {}:{}", sender.getAddress().getHostAddress(), sender.getPort());
+        if (!startsWith(packet, "M-SEARCH") || !acceptSearch(sender)) {
+            return;
+        }
+        for (byte[] response : getResponses(sender.getAddress())) {
+            try {
+                logger.trace("Sending to {} : {}", sender.getAddress().getHostAddress(),
+                        new String(response, StandardCharsets.UTF_8));
+                if (sendChannel.send(ByteBuffer.wrap(response), sender) == 0) {
+                    logger.debug("Could not send UPNP response, send buffer is full");
+                }
+            } catch (IOException e) {
+                logger.debug("Could not send UPNP response: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static boolean startsWith(ByteBuffer packet, String prefix) {
+        if (packet.remaining() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (packet.get(packet.position() + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides whether a search is answered. Searches that are repeated by the same client or that exceed the
+     * rate limit are dropped.
+     */
+    private boolean acceptSearch(SocketAddress sender) {
+        long now = System.currentTimeMillis();
+        Iterator<Long> it = lastSearches.values().iterator();
+        while (it.hasNext()) {
+            long time = it.next();
+            if (now - time < DUPLICATE_WINDOW && now >= time && lastSearches.size() <= MAX_CLIENTS) {
+                break;
+            }
+            it.remove();
+        }
+        if (lastSearches.containsKey(sender)) {
+            logger.trace("Ignoring repeated SSDP search from {}", sender);
+            return false;
+        }
+        if (now - rateWindowStart >= 1000 || now < rateWindowStart) {
+            rateWindowStart = now;
+            rateWindowCount = 0;
+        }
+        if (rateWindowCount >= MAX_SEARCHES_PER_SECOND) {
+            logger.trace("Ignoring SSDP search from {}, rate limit reached", sender);
+            return false;
+        }
+        rateWindowCount++;
+        lastSearches.put(sender, now);
+        return true;
+    }
+
+    /**
+     * Returns the response packets with the address of the interface, that is in the same network as the sender
+     */
+    private byte[][] getResponses(InetAddress sender) {
+        InetAddress local = address;
+        for (InterfaceAddress ia : interfaceAddresses) {
+            if (sameNetwork(ia.getAddress(), sender, ia.getNetworkPrefixLength())) {
+                local = ia.getAddress();
+                break;
+            }
+        }
+        byte[][] packets = responses.get(local);
+        if (packets == null) {
+            String hueId = usn.substring(usn.length() - 12).toUpperCase();
+
+            String[] stVersions = { "upnp:rootdevice", "urn:schemas-upnp-org:device:basic:1", "uuid:" + usn };
+
+            packets = new byte[stVersions.length][];
+            for (int i = 0; i < stVersions.length; i++) {
+                String msg = String.format(discoString, MULTI_ADDR, UPNP_PORT_RECV,
+                        "http://" + local.getHostAddress() + ":" + webPort + discoPath, hueId, stVersions[i], usn);
+                packets[i] = msg.getBytes(StandardCharsets.UTF_8);
+            }
+            responses.put(local, packets);
+        }
+        return packets;
+    }
+
+    private static boolean sameNetwork(InetAddress a, InetAddress b, int prefixLength) {
+        byte[] x = a.getAddress();
+        byte[] y = b.getAddress();
+        if (x.length != y.length) {
+            return false;
+        }
+        for (int i = 0; i < x.length && prefixLength > 0; i++, prefixLength -= 8) {
+            int mask = prefixLength >= 8 ? 0xff : (0xff << (8 - prefixLength)) & 0xff;
+            if ((x[i] & mask) != (y[i] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the interfaces to listen on and their IPv4 addresses. The first address is advertised, if a search
+     * can't be matched to an interface.
+     */
+    private List<NetworkInterface> findInterfaces() throws IOException {
+        responses.clear();
+        lastSearches.clear();
+        List<InterfaceAddress> addresses = new ArrayList<>();
+        List<NetworkInterface> usable = new ArrayList<>();
+        List<NetworkInterface> result = new ArrayList<>();
+        InetAddress configured = null;
+        if (discoveryIp != null && discoveryIp.trim().length() > 0) {
+            configured = InetAddress.getByName(discoveryIp);
+            address = configured;
+        }
+        for (NetworkInterface ni : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!ni.isUp() || ni.isLoopback() || !ni.supportsMulticast()) {
+                continue;
+            }
+            boolean used = false;
+            for (InterfaceAddress ia : ni.getInterfaceAddresses()) {
+                InetAddress addr = ia.getAddress();
+                if (addr instanceof Inet4Address) {
+                    if (!usable.contains(ni)) {
+                        usable.add(ni);
+                    }
+                    if (configured == null || configured.equals(addr)) {
+                        addresses.add(ia);
+                        used = true;
+                    }
+                }
+            }
+            if (used) {
+                result.add(ni);
+            }
+        }
+        if (configured == null) {
+            address = addresses.isEmpty() ? null : addresses.get(0).getAddress();
+        } else if (result.isEmpty()) {
+            // the configured address is not on a local interface (e.g. behind NAT), listen on all of them
+            result.addAll(usable);
+        }
+        interfaceAddresses = addresses;
+        if (address == null || result.isEmpty()) {
+            throw new IOException("No usable network interface found");
+        }
+        return result;
+    }
 }
@@ -16,18 +16,22 @@ import java.net.URLEncoder;
 import java.net.MalformedURLException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.api.Request.FailureListener;
 import org.eclipse.jetty.client.api.Response;
-import org.eclipse.jetty.client.api.Response.ContentListener;
+import org.eclipse.jetty.client.api.Response.AsyncContentListener;
 import org.eclipse.jetty.client.api.Response.HeadersListener;
 import org.eclipse.jetty.client.api.Result;
 import org.eclipse.jetty.client.util.BytesContentProvider;
@@ -35,7 +39,7 @@ import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
-import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.json.JSONException;
@@ -49,6 +53,7 @@ import io.socket.client.Manager;
 import io.socket.client.Socket;
 import io.socket.emitter.Emitter;
 import io.socket.engineio.client.Transport;
+import io.socket.thread.EventThread;
 
 /**
  * This class provides communication between openHAB and the openHAB Cloud service.
@@ -57,6 +62,11 @@ import io.socket.engineio.client.Transport;
  * the openHAB Cloud service and Jetty Http client to send local http requests to
  * openHAB.
  *
+ * Response content is collected into frames of up to {@link #FRAME_SIZE} bytes, which are sent when they are full or
+ * {@link #FRAME_DELAY} milliseconds after their first byte. Reading the response of a local request is paused until
+ * the Socket.IO client has processed its last frame, so a congested connection to the openHAB Cloud slows down the
+ * local requests instead of buffering their responses.
+ *
  * @author Victor Belov - Initial contribution
  * @author Kai Kreuzer - migrated code to new Jetty client and ESH APIs
  *
@@ -79,6 +89,18 @@ public class CloudClient {
      */
     private static final int HTTP_CLIENT_TIMEOUT = 30000;
 
+    /*
+     * This constant defines the maximum size of a response content frame sent to the openHAB Cloud
+     */
+    private static final int FRAME_SIZE = 64 * 1024;
+
+    /*
+     * This constant defines how long (ms) response content is collected before an incomplete frame is sent
+     */
+    private static final long FRAME_DELAY = 50;
+
+    private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
+
     /*
      * This variable holds base URL for the openHAB Cloud connections
      */
@@ -105,9 +127,18 @@ public class CloudClient {
     private HttpClient jettyClient;
 
     /*
-     * This hashmap holds HTTP requests to local openHAB which are currently running
+     * This map holds HTTP requests to local openHAB which are currently running, by their request id
+     */
+    private final ConcurrentMap<Integer, ResponseListener> runningRequests = new ConcurrentHashMap<>();
+
+    /*
+     * Statistics of the completed requests
      */
-    private HashMap<Integer, Request> runningRequests;
+    private final AtomicLong proxiedRequests = new AtomicLong();
+    private final AtomicLong proxiedBytes = new AtomicLong();
+    private final AtomicLong proxiedFrames = new AtomicLong();
+    private final AtomicLong proxiedLatency = new AtomicLong();
+    private final AtomicLong proxiedDuration = new AtomicLong();
 
     /*
      * This variable indicates if connection to the openHAB Cloud is currently in an established state
@@ -155,7 +186,6 @@ public class CloudClient {
         this.localBaseUrl = localBaseUrl;
         this.remoteAccessEnabled = remoteAccessEnabled;
         this.exposedItems = exposedItems;
-        runningRequests = new HashMap<Integer, Request>();
         jettyClient = new HttpClient();
         jettyClient.setMaxConnectionsPerDestination(HTTP_CLIENT_MAX_CONNECTIONS_PER_DEST);
         jettyClient.setConnectTimeout(HTTP_CLIENT_TIMEOUT);
@@ -259,6 +289,8 @@ public class CloudClient {
         logger.info("Disconnected from the openHAB Cloud service (UUID = {}, base URL = {})", this.uuid,
                 this.localBaseUrl);
         isConnected = false;
+        // Running requests can't be answered anymore
+        cancelRunningRequests();
         // On disconnect stop jetty client to shutdown all ongoing requests if there were any
         if (jettyClient != null) {
             try {
@@ -267,10 +299,6 @@ public class CloudClient {
                 logger.error("Could not stop Jetty client: {}", e.getMessage());
             }
         }
-        // And clean up the list of running requests
-        if (runningRequests != null) {
-            runningRequests.clear();
-        }
     }
 
     /**
@@ -360,11 +388,17 @@ public class CloudClient {
                 logger.error("Unsupported request method {}", requestMethod);
                 return;
             }
-            ResponseListener listener = new ResponseListener(requestId);
-            request.onResponseHeaders(listener).onResponseContent(listener).onRequestFailure(listener).send(listener);
-            // If successfully submitted request to http client, add it to the list of currently
-            // running requests to be able to cancel it if needed
-            runningRequests.put(requestId, request);
+            ResponseListener listener = new ResponseListener(requestId, request);
+            // Add the request to the list of currently running requests to be able to cancel it if needed,
+            // before sending it, as it may complete right away
+            ResponseListener previous = runningRequests.put(requestId, listener);
+            if (previous != null) {
+                logger.debug("Request {} replaces a running request with the same id", requestId);
+                previous.cancel();
+            }
+            // The listener receives the response events as a response listener of send(), registering it for
+            // headers or content as well would deliver them twice
+            request.onRequestFailure(listener).send(listener);
         } catch (JSONException e) {
             logger.error("{}", e.getMessage());
         } catch (IOException e) {
@@ -398,10 +432,9 @@ public class CloudClient {
             int requestId = data.getInt("id");
             logger.debug("Received cancel for request {}", requestId);
             // Find and abort running request
-            if (runningRequests.containsKey(requestId)) {
-                Request request = runningRequests.get(requestId);
-                request.abort(new InterruptedException());
-                runningRequests.remove(requestId);
+            ResponseListener listener = runningRequests.remove(requestId);
+            if (listener != null) {
+                listener.cancel();
             }
         } catch (JSONException e) {
             logger.error("{}", e.getMessage());
@@ -424,6 +457,14 @@ public class CloudClient {
         }
     }
 
+    private void cancelRunningRequests() {
+        for (Iterator<ResponseListener> it = runningRequests.values().iterator(); it.hasNext();) {
+            ResponseListener listener = it.next();
+            it.remove();
+            listener.cancel();
+        }
+    }
+
     /**
      * This method sends notification to the openHAB Cloud
      *
@@ -533,6 +574,9 @@ public class CloudClient {
      */
     public void shutdown() {
         logger.info("Shutting down openHAB Cloud service connection");
+        logger.debug("Proxied {} requests with {} bytes in {} frames, average latency {} ms", getProxiedRequests(),
+                getProxiedBytes(), getProxiedFrames(), getAverageLatency());
+        cancelRunningRequests();
         try {
             jettyClient.stop();
         } catch (Exception e) {
@@ -541,6 +585,50 @@ public class CloudClient {
         socket.disconnect();
     }
 
+    /**
+     * Returns the number of local requests which are currently proxied
+     */
+    public int getRunningRequests() {
+        return runningRequests.size();
+    }
+
+    /**
+     * Returns the number of completed proxied requests
+     */
+    public long getProxiedRequests() {
+        return proxiedRequests.get();
+    }
+
+    /**
+     * Returns the number of response content bytes of the completed proxied requests
+     */
+    public long getProxiedBytes() {
+        return proxiedBytes.get();
+    }
+
+    /**
+     * Returns the number of response content frames sent for the completed proxied requests
+     */
+    public long getProxiedFrames() {
+        return proxiedFrames.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds from receiving a request until its response headers are sent
+     */
+    public long getAverageLatency() {
+        long requests = proxiedRequests.get();
+        return requests > 0 ? TimeUnit.NANOSECONDS.toMillis(proxiedLatency.get() / requests) : 0;
+    }
+
+    /**
+     * Returns the average response content throughput of the completed proxied requests in bytes per second
+     */
+    public long getAverageThroughput() {
+        long duration = proxiedDuration.get();
+        return duration > 0 ? proxiedBytes.get() * TimeUnit.SECONDS.toNanos(1) / duration : 0;
+    }
+
     public String getOpenHABVersion() {
         return openHABVersion;
     }
@@ -557,14 +645,25 @@ public class CloudClient {
      * An internal class which forwards response headers and data back to the openHAB Cloud
      */
     private class ResponseListener
-            implements Response.CompleteListener, HeadersListener, ContentListener, FailureListener {
+            implements Response.CompleteListener, HeadersListener, AsyncContentListener, FailureListener {
 
-        private static final String THREADPOOL_OPENHABCLOUD = "openhabcloud";
         private int mRequestId;
+        private final Request mRequest;
         private boolean mHeadersSent = false;
-
-        public ResponseListener(int requestId) {
+        private boolean mCancelled = false;
+        // content which has not been sent yet
+        private byte[] mFrame;
+        private int mFrameLength;
+        private ScheduledFuture<?> mFrameTimer;
+        // statistics
+        private final long mStartTime = System.nanoTime();
+        private long mHeadersTime;
+        private long mBytes;
+        private long mFrames;
+
+        public ResponseListener(int requestId, Request request) {
             mRequestId = requestId;
+            mRequest = request;
         }
 
         private JSONObject getJSONHeaders(HttpFields httpFields) {
@@ -579,15 +678,37 @@ public class CloudClient {
             return headersJSON;
         }
 
+        /**
+         * Aborts the request, nothing more is sent to the openHAB Cloud for it
+         */
+        public void cancel() {
+            synchronized (this) {
+                mCancelled = true;
+                mFrame = null;
+                mFrameLength = 0;
+                cancelFrameTimer();
+            }
+            mRequest.abort(new InterruptedException());
+        }
+
         @Override
         public void onComplete(Result result) {
             // Remove this request from list of running requests
-            runningRequests.remove(mRequestId);
+            runningRequests.remove(mRequestId, this);
             if (result.isFailed() && result.getResponse().getStatus() != HttpStatus.OK_200) {
                 logger.warn("Jetty request {} failed: {}", mRequestId, result.getFailure().getMessage());
                 logger.warn("{}", result.getRequestFailure().getMessage());
                 logger.warn("{}", result.getResponseFailure().getMessage());
             }
+            synchronized (this) {
+                if (mCancelled) {
+                    logger.debug("Request {} has been cancelled", mRequestId);
+                    return;
+                }
+                cancelFrameTimer();
+                sendFrame();
+                updateStatistics();
+            }
 
             /**
              * What is this? In some cases where latency is very low the myopenhab service
@@ -612,6 +733,9 @@ public class CloudClient {
 
         @Override
         public synchronized void onFailure(Request request, Throwable failure) {
+            if (mCancelled) {
+                return;
+            }
             logger.error("{}", failure.getMessage());
             JSONObject responseJson = new JSONObject();
             try {
@@ -624,25 +748,109 @@ public class CloudClient {
         }
 
         @Override
-        public void onContent(Response response, ByteBuffer content) {
-            logger.debug("Jetty received response content of size {}", String.valueOf(content.remaining()));
+        public void onContent(Response response, ByteBuffer content, Callback callback) {
+            logger.trace("Jetty received response content of size {}", content.remaining());
+            boolean sent = false;
+            synchronized (this) {
+                if (!mCancelled) {
+                    mBytes += content.remaining();
+                    while (content.hasRemaining()) {
+                        if (mFrame == null) {
+                            mFrame = new byte[FRAME_SIZE];
+                        }
+                        int length = Math.min(content.remaining(), FRAME_SIZE - mFrameLength);
+                        content.get(mFrame, mFrameLength, length);
+                        mFrameLength += length;
+                        if (mFrameLength == FRAME_SIZE) {
+                            sent |= sendFrame();
+                        }
+                    }
+                    if (mFrameLength > 0 && mFrameTimer == null) {
+                        mFrameTimer = ThreadPoolManager.getScheduledPool(THREADPOOL_OPENHABCLOUD)
+                                .schedule(this::onFrameTimeout, FRAME_DELAY, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            if (sent) {
+                // continue reading once the Socket.IO client has processed the frame. Socket.IO processes its
+                // events in order on a single thread, so this is after the frame has been handed to the transport.
+                EventThread.exec(() -> {
+                    try {
+                        jettyClient.getExecutor().execute(callback::succeeded);
+                    } catch (RejectedExecutionException e) {
+                        // the client has been stopped
+                        callback.failed(e);
+                    }
+                });
+            } else {
+                callback.succeeded();
+            }
+        }
+
+        private synchronized void onFrameTimeout() {
+            mFrameTimer = null;
+            if (!mCancelled) {
+                sendFrame();
+            }
+        }
+
+        private void cancelFrameTimer() {
+            if (mFrameTimer != null) {
+                mFrameTimer.cancel(false);
+                mFrameTimer = null;
+            }
+        }
+
+        /**
+         * Sends the collected content, if any
+         *
+         * @return true if a frame has been sent
+         */
+        private boolean sendFrame() {
+            if (mFrameLength == 0) {
+                return false;
+            }
+            byte[] body = mFrameLength == mFrame.length ? mFrame : Arrays.copyOf(mFrame, mFrameLength);
+            if (body == mFrame) {
+                mFrame = null;
+            }
+            mFrameLength = 0;
             JSONObject responseJson = new JSONObject();
             try {
                 responseJson.put("id", mRequestId);
-                responseJson.put("body", BufferUtil.toArray(content));
+                responseJson.put("body", body);
                 socket.emit("responseContentBinary", responseJson);
-                logger.debug("Sent content to request {}", mRequestId);
+                mFrames++;
+                logger.trace("Sent {} bytes of content to request {}", body.length, mRequestId);
             } catch (JSONException e) {
                 logger.error("{}", e.getMessage());
             }
+            return true;
+        }
+
+        private void updateStatistics() {
+            long duration = System.nanoTime() - mStartTime;
+            long latency = (mHeadersSent ? mHeadersTime : System.nanoTime()) - mStartTime;
+            proxiedRequests.incrementAndGet();
+            proxiedBytes.addAndGet(mBytes);
+            proxiedFrames.addAndGet(mFrames);
+            proxiedLatency.addAndGet(latency);
+            proxiedDuration.addAndGet(duration);
+            logger.debug("Request {} took {} ms, headers after {} ms, {} bytes in {} frames ({} KB/s)", mRequestId,
+                    TimeUnit.NANOSECONDS.toMillis(duration), TimeUnit.NANOSECONDS.toMillis(latency), mBytes, mFrames,
+                    duration > 0 ? mBytes * 1000000 / duration : 0);
         }
 
         @Override
-        public void onHeaders(Response response) {
+        public synchronized void onHeaders(Response response) {
+            if (mCancelled) {
+                return;
+            }
             if (!mHeadersSent) {
                 logger.debug("Jetty finished receiving response header");
                 JSONObject responseJson = new JSONObject();
                 mHeadersSent = true;
+                mHeadersTime = System.nanoTime();
                 try {
                     responseJson.put("id", mRequestId);
                     responseJson.put("headers", getJSONHeaders(response.getHeaders()));
@@ -14,14 +14,15 @@ import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -49,6 +50,7 @@ import org.rrd4j.ConsolFun;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
 import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.RrdDbPool;
 import org.rrd4j.core.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +59,8 @@ import org.slf4j.LoggerFactory;
  * handles requests for chart series data from the CometVisu client
  * used by the diagram plugin
  *
+ * Series are downsampled to the requested resolution and the results of recent requests are cached.
+ *
  * @author Tobias Bräutigam
  * @since 2.0.0
  *
@@ -79,6 +83,20 @@ public class ChartResource implements RESTResource {
         // df.setPositivePrefix("+");
     }
 
+    // number of cached series and how long they are valid
+    private static final int CACHE_SIZE = 32;
+    private static final long CACHE_TTL = 60000;
+
+    private final Map<String, CachedSeries> cache = Collections
+            .synchronizedMap(new LinkedHashMap<String, CachedSeries>(CACHE_SIZE, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSeries> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
     protected static Map<String, QueryablePersistenceService> persistenceServices = new HashMap<String, QueryablePersistenceService>();
 
     private ItemRegistry itemRegistry;
@@ -157,12 +175,25 @@ public class ChartResource implements RESTResource {
                     throw new IllegalArgumentException("No Persistence service found.");
                 }
             }
+            // requests for a range within the same resolution interval share the cached series
+            long keyStart = resolution > 0 ? times[0] - times[0] % resolution : times[0];
+            long keyEnd = resolution > 0 ? times[1] - times[1] % resolution : times[1];
+            String cacheKey = persistenceService.getId() + ":" + itemName + ":" + consilidationFunction + ":"
+                    + keyStart + ":" + keyEnd + ":" + resolution;
+            CachedSeries cached = cache.get(cacheKey);
+            if (cached != null && System.currentTimeMillis() - cached.created < CACHE_TTL) {
+                logger.debug("using cached series for '{}'", cacheKey);
+                return Response.ok(cached.data, responseType).build();
+            }
             Object data = null;
             if (persistenceService.getId().equals("rrd4j")) {
                 data = getRrdSeries(persistenceService, item, consilidationFunction, startTime, endTime, resolution);
             } else {
                 data = getPersistenceSeries(persistenceService, item, startTime, endTime, resolution);
             }
+            if (resolution > 0) {
+                cache.put(cacheKey, new CachedSeries(data));
+            }
             return Response.ok(data, responseType).build();
         } catch (ItemNotFoundException e1) {
             logger.error("Item '{}' not found error while requesting series data.", itemName);
@@ -173,7 +204,7 @@ public class ChartResource implements RESTResource {
 
     public Object getPersistenceSeries(QueryablePersistenceService persistenceService, Item item, Date timeBegin,
             Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new HashMap<Long, ArrayList<String>>();
+        ChartSeries series = new ChartSeries(1, 256);
 
         // Define the data filter
         FilterCriteria filter = new FilterCriteria();
@@ -193,14 +224,12 @@ public class ChartResource implements RESTResource {
             HistoricItem historicItem = it.next();
             org.eclipse.smarthome.core.types.State state = historicItem.getState();
             if (state instanceof DecimalType) {
-                ArrayList<String> vals = new ArrayList<String>();
-                vals.add(formatDouble(((DecimalType) state).doubleValue(), "null", true));
-                data.put(historicItem.getTimestamp().getTime(), vals);
+                series.add(historicItem.getTimestamp().getTime(), ((DecimalType) state).doubleValue());
             }
         }
         logger.debug("'{}' querying item '{}' from '{}' to '{}' => '{}' results", persistenceService.getId(),
                 filter.getItemName(), filter.getBeginDate(), filter.getEndDate(), dataCounter);
-        return convertToRrd(data);
+        return convertToRrd(series, timeBegin, timeEnd, resolution);
     }
 
     /**
@@ -216,7 +245,7 @@ public class ChartResource implements RESTResource {
      */
     public Object getRrdSeries(QueryablePersistenceService persistenceService, Item item,
             ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) {
-        Map<Long, ArrayList<String>> data = new TreeMap<Long, ArrayList<String>>();
+        ChartSeries series = null;
         try {
             List<String> itemNames = new ArrayList<String>();
 
@@ -229,7 +258,8 @@ public class ChartResource implements RESTResource {
                 itemNames.add(item.getName());
             }
             for (String itemName : itemNames) {
-                addRrdData(data, itemName, consilidationFunction, timeBegin, timeEnd, resolution);
+                ChartSeries itemSeries = getRrdData(itemName, consilidationFunction, timeBegin, timeEnd, resolution);
+                series = series == null ? itemSeries : series.merge(itemSeries);
             }
 
         } catch (FileNotFoundException e) {
@@ -240,60 +270,52 @@ public class ChartResource implements RESTResource {
             logger.error("{}: fallback to generic persistance service", e.getLocalizedMessage());
             return getPersistenceSeries(persistenceService, item, timeBegin, timeEnd, resolution);
         }
-        return convertToRrd(data);
+        if (series == null) {
+            return new ArrayList<Object>();
+        }
+        return convertToRrd(series, timeBegin, timeEnd, resolution);
     }
 
-    private ArrayList<Object> convertToRrd(Map<Long, ArrayList<String>> data) {
-        // sort data by key
-        Map<Long, ArrayList<String>> treeMap = new TreeMap<Long, ArrayList<String>>(data);
-        ArrayList<Object> rrd = new ArrayList<Object>();
-        for (Long time : treeMap.keySet()) {
-            Object[] entry = new Object[2];
-            entry[0] = time;
-            entry[1] = data.get(time);
-            rrd.add(entry);
+    /**
+     * downsamples the series to the number of rows the resolution allows in the requested range and converts it to
+     * the format of the client
+     */
+    private Object convertToRrd(ChartSeries series, Date timeBegin, Date timeEnd, long resolution) {
+        int rows = series.size();
+        if (resolution > 0) {
+            long maxRows = (timeEnd.getTime() - timeBegin.getTime()) / 1000 / resolution + 1;
+            series = series.downsample((int) Math.min(maxRows, Integer.MAX_VALUE));
         }
-        return rrd;
+        logger.debug("returning {} of {} rows", series.size(), rows);
+        // DecimalFormat is not thread-safe
+        return series.toRrd((DecimalFormat) df.clone(), "null");
     }
 
-    private Map<Long, ArrayList<String>> addRrdData(Map<Long, ArrayList<String>> data, String itemName,
-            ConsolFun consilidationFunction, Date timeBegin, Date timeEnd, long resolution) throws IOException {
-        RrdDb rrdDb = new RrdDb(RRD_FOLDER + File.separator + itemName + ".rrd");
-        FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction, Util.getTimestamp(timeBegin),
-                Util.getTimestamp(timeEnd), resolution);
-        FetchData fetchData = fetchRequest.fetchData();
-        // logger.info(fetchData.toString());
-        long[] timestamps = fetchData.getTimestamps();
-        double[][] values = fetchData.getValues();
-
-        logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
-                fetchData.getColumnCount());
-
-        for (int row = 0; row < fetchData.getRowCount(); row++) {
-            // change to microseconds
-            long time = timestamps[row] * 1000;
-
-            if (!data.containsKey(time)) {
-                data.put(time, new ArrayList<String>());
-            }
-            ArrayList<String> vals = data.get(time);
-            int indexOffset = vals.size();
-            for (int dsIndex = 0; dsIndex < fetchData.getColumnCount(); dsIndex++) {
-                vals.add(dsIndex + indexOffset, formatDouble(values[dsIndex][row], "null", true));
-            }
-        }
-        rrdDb.close();
+    private ChartSeries getRrdData(String itemName, ConsolFun consilidationFunction, Date timeBegin, Date timeEnd,
+            long resolution) throws IOException {
+        // the pool shares the database of an item between concurrent requests
+        RrdDbPool pool = RrdDbPool.getInstance();
+        RrdDb rrdDb = pool.requestRrdDb(RRD_FOLDER + File.separator + itemName + ".rrd");
+        try {
+            FetchRequest fetchRequest = rrdDb.createFetchRequest(consilidationFunction, Util.getTimestamp(timeBegin),
+                    Util.getTimestamp(timeEnd), resolution);
+            FetchData fetchData = fetchRequest.fetchData();
 
-        return data;
-    }
+            logger.debug("RRD fetch returned '{}' rows and '{}' columns", fetchData.getRowCount(),
+                    fetchData.getColumnCount());
 
-    static String formatDouble(double x, String nanString, boolean forceExponents) {
-        if (Double.isNaN(x)) {
-            return nanString;
+            return ChartSeries.fromRrd(fetchData.getTimestamps(), fetchData.getValues());
+        } finally {
+            pool.release(rrdDb);
         }
-        if (forceExponents) {
-            return df.format(x);
+    }
+
+    private static class CachedSeries {
+        private final long created = System.currentTimeMillis();
+        private final Object data;
+
+        private CachedSeries(Object data) {
+            this.data = data;
         }
-        return "" + x;
     }
 }
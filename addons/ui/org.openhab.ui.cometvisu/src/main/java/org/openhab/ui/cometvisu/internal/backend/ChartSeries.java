@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.backend;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Series data of a diagram, stored in primitive arrays. Each row has a timestamp in milliseconds and one value per
+ * column, a missing value is stored as NaN.
+ *
+ * @author Tobias Bräutigam
+ * @since 2.2.0
+ */
+class ChartSeries {
+    private long[] times;
+    private double[][] values;
+    private int size;
+
+    /**
+     * Creates an empty series
+     *
+     * @param columns
+     *            - number of values per row
+     * @param capacity
+     *            - initial number of rows
+     */
+    ChartSeries(int columns, int capacity) {
+        times = new long[Math.max(capacity, 16)];
+        values = new double[columns][times.length];
+    }
+
+    private ChartSeries(long[] times, double[][] values, int size) {
+        this.times = times;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Creates a series from the rows of a RRD fetch
+     *
+     * @param timestamps
+     *            - timestamps in seconds
+     * @param values
+     *            - values, indexed by column and row
+     */
+    static ChartSeries fromRrd(long[] timestamps, double[][] values) {
+        long[] times = new long[timestamps.length];
+        for (int row = 0; row < times.length; row++) {
+            times[row] = timestamps[row] * 1000;
+        }
+        return new ChartSeries(times, values, times.length);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int columns() {
+        return values.length;
+    }
+
+    /**
+     * Appends a row to a single column series. Rows must be added in ascending order, a row with the same timestamp
+     * as the last one replaces it.
+     */
+    void add(long time, double value) {
+        if (size > 0 && times[size - 1] == time) {
+            values[0][size - 1] = value;
+            return;
+        }
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            for (int column = 0; column < values.length; column++) {
+                values[column] = Arrays.copyOf(values[column], size * 2);
+            }
+        }
+        times[size] = time;
+        values[0][size] = value;
+        size++;
+    }
+
+    /**
+     * Returns a series with the columns of this and the other series. Rows with a timestamp that only one of the
+     * series has, get NaN values for the columns of the other series.
+     */
+    ChartSeries merge(ChartSeries other) {
+        int columns = values.length + other.values.length;
+        if (size == other.size && Arrays.equals(Arrays.copyOf(times, size), Arrays.copyOf(other.times, size))) {
+            double[][] merged = Arrays.copyOf(values, columns);
+            System.arraycopy(other.values, 0, merged, values.length, other.values.length);
+            return new ChartSeries(times, merged, size);
+        }
+        long[] mergedTimes = new long[size + other.size];
+        double[][] merged = new double[columns][mergedTimes.length];
+        int i = 0;
+        int j = 0;
+        int row = 0;
+        while (i < size || j < other.size) {
+            boolean fromThis = j >= other.size || (i < size && times[i] <= other.times[j]);
+            boolean fromOther = i >= size || (j < other.size && other.times[j] <= times[i]);
+            long time = fromThis ? times[i] : other.times[j];
+            for (int column = 0; column < values.length; column++) {
+                merged[column][row] = fromThis ? values[column][i] : Double.NaN;
+            }
+            for (int column = 0; column < other.values.length; column++) {
+                merged[values.length + column][row] = fromOther ? other.values[column][j] : Double.NaN;
+            }
+            mergedTimes[row++] = time;
+            if (fromThis) {
+                i++;
+            }
+            if (fromOther) {
+                j++;
+            }
+        }
+        return new ChartSeries(mergedTimes, merged, row);
+    }
+
+    /**
+     * Reduces the series to the given number of rows with the Largest-Triangle-Three-Buckets algorithm. The first
+     * and last row are kept, from each bucket in between the row is kept, that forms the largest triangle with the
+     * previously kept row and the average of the next bucket. With more than one column, the areas of all columns
+     * are added up.
+     *
+     * @param threshold
+     *            - maximum number of rows
+     * @return the downsampled series or this series, if it is small enough
+     */
+    ChartSeries downsample(int threshold) {
+        if (threshold < 3 || size <= threshold) {
+            return this;
+        }
+        int columns = values.length;
+        long[] sampledTimes = new long[threshold];
+        double[][] sampled = new double[columns][threshold];
+        double[] averages = new double[columns];
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+
+        int a = 0;
+        copyRow(a, sampledTimes, sampled, 0);
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // average of the next bucket, the last row for the last bucket
+            int averageStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int averageEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageTime = 0;
+            for (int row = averageStart; row < averageEnd; row++) {
+                averageTime += times[row] - times[0];
+            }
+            averageTime /= averageEnd - averageStart;
+            for (int column = 0; column < columns; column++) {
+                double sum = 0;
+                int count = 0;
+                for (int row = averageStart; row < averageEnd; row++) {
+                    if (!Double.isNaN(values[column][row])) {
+                        sum += values[column][row];
+                        count++;
+                    }
+                }
+                averages[column] = count > 0 ? sum / count : Double.NaN;
+            }
+
+            // row of the current bucket with the largest triangle
+            int rangeStart = (int) (bucket * bucketSize) + 1;
+            int rangeEnd = (int) ((bucket + 1) * bucketSize) + 1;
+            double timeA = times[a] - times[0];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int row = rangeStart; row < rangeEnd; row++) {
+                double time = times[row] - times[0];
+                double area = 0;
+                for (int column = 0; column < columns; column++) {
+                    double triangle = Math.abs((timeA - averageTime) * (values[column][row] - values[column][a])
+                            - (timeA - time) * (averages[column] - values[column][a]));
+                    if (!Double.isNaN(triangle)) {
+                        area += triangle;
+                    }
+                }
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = row;
+                }
+            }
+            copyRow(next, sampledTimes, sampled, bucket + 1);
+            a = next;
+        }
+        copyRow(size - 1, sampledTimes, sampled, threshold - 1);
+        return new ChartSeries(sampledTimes, sampled, threshold);
+    }
+
+    private void copyRow(int row, long[] toTimes, double[][] toValues, int toRow) {
+        toTimes[toRow] = times[row];
+        for (int column = 0; column < values.length; column++) {
+            toValues[column][toRow] = values[column][row];
+        }
+    }
+
+    /**
+     * Converts the series to the format of the CometVisu client, an array of [[timestamp,[data1,data2,...]]]
+     *
+     * @param format
+     *            - format of the values
+     * @param nanString
+     *            - string for missing values
+     */
+    List<Object> toRrd(DecimalFormat format, String nanString) {
+        List<Object> rrd = new ArrayList<Object>(size);
+        for (int row = 0; row < size; row++) {
+            List<String> rowValues = new ArrayList<String>(values.length);
+            for (int column = 0; column < values.length; column++) {
+                double value = values[column][row];
+                rowValues.add(Double.isNaN(value) ? nanString : format.format(value));
+            }
+            rrd.add(new Object[] { times[row], rowValues });
+        }
+        return rrd;
+    }
+}
@@ -11,10 +11,14 @@ package org.openhab.ui.cometvisu.internal.backend;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -35,7 +39,7 @@ import org.eclipse.smarthome.core.items.ItemRegistry;
 import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.io.rest.RESTResource;
 import org.glassfish.jersey.media.sse.EventOutput;
-import org.glassfish.jersey.media.sse.SseBroadcaster;
+import org.glassfish.jersey.media.sse.OutboundEvent;
 import org.glassfish.jersey.media.sse.SseFeature;
 import org.openhab.ui.cometvisu.internal.Config;
 import org.openhab.ui.cometvisu.internal.backend.beans.StateBean;
@@ -48,6 +52,9 @@ import org.slf4j.LoggerFactory;
  * handles read request from the CometVisu client every request initializes a
  * SSE communication
  *
+ * Every connection has its own subscription with the items it has requested. State changes are serialized once
+ * and only written to the connections, that have subscribed to the item.
+ *
  * @author Tobias Bräutigam
  * @since 2.0.0
  */
@@ -55,16 +62,25 @@ import org.slf4j.LoggerFactory;
 public class ReadResource implements EventBroadcaster, RESTResource {
     private final Logger logger = LoggerFactory.getLogger(ReadResource.class);
 
-    private SseBroadcaster broadcaster = new SseBroadcaster();
-
     private final ExecutorService executorService;
 
     private ItemRegistry itemRegistry;
 
     private StateEventListener stateEventListener;
 
-    private List<String> itemNames = new ArrayList<String>();
-    private Map<Item, Map<String, Class<? extends State>>> items = new HashMap<Item, Map<String, Class<? extends State>>>();
+    // all connected clients
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<Subscription>();
+
+    // CometVisu item name (with optional type prefix) -> clients that requested it
+    private final Map<String, Set<Subscription>> subscribers = new ConcurrentHashMap<String, Set<Subscription>>();
+
+    // openHAB item name -> requested CometVisu item names and their state types
+    private final Map<String, Map<String, Class<? extends State>>> items = new ConcurrentHashMap<>();
+
+    // event rate, only updated by the executor thread
+    private long rateIntervalStart;
+    private long rateIntervalEvents;
+    private volatile long eventsPerSecond;
 
     @Context
     private UriInfo uriInfo;
@@ -114,69 +130,221 @@ public class ReadResource implements EventBroadcaster, RESTResource {
     public Object getStates(@QueryParam("a") List<String> itemNames, @QueryParam("i") long index,
             @QueryParam("t") long time) throws IOException, InterruptedException {
         final EventOutput eventOutput = new EventOutput();
+        final Subscription subscription = new Subscription(eventOutput);
 
-        this.itemNames = itemNames;
-
-        broadcaster.add(eventOutput);
+        for (String cvItemName : itemNames) {
+            String[] parts = cvItemName.split(":");
+            String ohItemName = cvItemName;
+            Class<? extends State> stateClass = null;
+            if (parts.length == 2) {
+                String classPrefix = parts[0].toLowerCase();
+                if (Config.itemTypeMapper.containsKey(classPrefix)) {
+                    stateClass = Config.itemTypeMapper.get(classPrefix);
+                } else {
+                    logger.debug("no type found for '{}'", classPrefix);
+                }
+                ohItemName = parts[1];
+            }
+            subscription.add(cvItemName, ohItemName, stateClass);
+        }
+        subscribe(subscription);
 
-        // get all requested items and send their states to the client
-        items = new HashMap<Item, Map<String, Class<? extends State>>>();
-        // send the current states of all items to the client
         if (this.itemRegistry != null) {
-            List<StateBean> states = new ArrayList<StateBean>();
-            for (String cvItemName : itemNames) {
-                try {
-                    String[] parts = cvItemName.split(":");
-                    String ohItemName = cvItemName;
-                    Class<? extends State> stateClass = null;
-                    if (parts.length == 2) {
-                        String classPrefix = parts[0].toLowerCase();
-                        if (Config.itemTypeMapper.containsKey(classPrefix)) {
-                            stateClass = Config.itemTypeMapper.get(classPrefix);
-                            classPrefix += ":";
-                        } else {
-                            logger.debug("no type found for '{}'", classPrefix);
-                            classPrefix = "";
-                        }
-                        ohItemName = parts[1];
-                    }
-                    Item item = this.itemRegistry.getItem(ohItemName);
-                    if (!items.containsKey(item)) {
-                        items.put(item, new HashMap<String, Class<? extends State>>());
-                    }
-                    items.get(item).put(cvItemName, stateClass);
-                    StateBean itemState = new StateBean();
-                    itemState.name = cvItemName;
-
-                    if (stateClass != null) {
-                        itemState.state = item.getStateAs(stateClass).toString();
-                        logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, itemState.state);
-                    } else {
-                        itemState.state = item.getState().toString();
-                    }
-                    states.add(itemState);
-                } catch (ItemNotFoundException e) {
-                    logger.error("{}", e.getLocalizedMessage());
+            // the states are read after subscribing on the event thread, so that a state change is either contained
+            // in the initial states or sent after them
+            executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    sendInitialStates(subscription, itemNames);
                 }
-            }
-            logger.debug("initially broadcasting {}/{} item states", states.size(), itemNames.size());
-            broadcaster.broadcast(SseUtil.buildEvent(states));
+            });
         }
-        // listen to state changes of the requested items
-        registerItems();
 
         return eventOutput;
     }
 
+    /**
+     * Sends the current states of all requested items to the client
+     */
+    private void sendInitialStates(Subscription subscription, List<String> cvItemNames) {
+        ItemRegistry itemRegistry = this.itemRegistry;
+        if (itemRegistry == null) {
+            return;
+        }
+        List<StateBean> states = new ArrayList<StateBean>();
+        for (String cvItemName : cvItemNames) {
+            try {
+                Item item = itemRegistry.getItem(subscription.itemNames.get(cvItemName));
+                StateBean itemState = new StateBean();
+                itemState.name = cvItemName;
+
+                Class<? extends State> stateClass = subscription.stateClasses.get(cvItemName);
+                if (stateClass != null) {
+                    itemState.state = item.getStateAs(stateClass).toString();
+                    logger.trace("get state of '{}' as '{}' == '{}'", item, stateClass, itemState.state);
+                } else {
+                    itemState.state = item.getState().toString();
+                }
+                states.add(itemState);
+            } catch (ItemNotFoundException e) {
+                logger.error("{}", e.getLocalizedMessage());
+            }
+        }
+        logger.debug("initially sending {}/{} item states", states.size(), cvItemNames.size());
+        send(subscription, SseUtil.buildEvent(states));
+    }
+
+    /**
+     * Adds a client to the subscriber index and listens to the state changes of its items
+     */
+    private synchronized void subscribe(Subscription subscription) {
+        // clients reconnect on every page load, drop connections that are gone meanwhile
+        for (Subscription existing : subscriptions) {
+            if (existing.eventOutput.isClosed()) {
+                unsubscribe(existing);
+            }
+        }
+        subscriptions.add(subscription);
+        for (Map.Entry<String, String> entry : subscription.itemNames.entrySet()) {
+            String cvItemName = entry.getKey();
+            Set<Subscription> clients = subscribers.get(cvItemName);
+            if (clients == null) {
+                clients = new CopyOnWriteArraySet<Subscription>();
+                subscribers.put(cvItemName, clients);
+            }
+            clients.add(subscription);
+
+            String ohItemName = entry.getValue();
+            Map<String, Class<? extends State>> clientItems = items.get(ohItemName);
+            if (clientItems == null || !clientItems.containsKey(cvItemName)) {
+                // replace instead of modifying, the state listener reads the map without locking
+                Map<String, Class<? extends State>> newClientItems = new HashMap<String, Class<? extends State>>();
+                if (clientItems != null) {
+                    newClientItems.putAll(clientItems);
+                }
+                newClientItems.put(cvItemName, subscription.stateClasses.get(cvItemName));
+                items.put(ohItemName, Collections.unmodifiableMap(newClientItems));
+            }
+            if (clientItems == null) {
+                addStateChangeListener(ohItemName);
+            }
+        }
+        logger.debug("client subscribed to {} items, {} clients connected", subscription.itemNames.size(),
+                subscriptions.size());
+    }
+
+    /**
+     * Removes a client from the subscriber index and stops listening to items, that no client is interested in
+     */
+    private synchronized void unsubscribe(Subscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : subscription.itemNames.entrySet()) {
+            String cvItemName = entry.getKey();
+            Set<Subscription> clients = subscribers.get(cvItemName);
+            if (clients == null) {
+                continue;
+            }
+            clients.remove(subscription);
+            if (!clients.isEmpty()) {
+                continue;
+            }
+            subscribers.remove(cvItemName);
+
+            String ohItemName = entry.getValue();
+            Map<String, Class<? extends State>> clientItems = items.get(ohItemName);
+            if (clientItems == null) {
+                continue;
+            }
+            Map<String, Class<? extends State>> newClientItems = new HashMap<String, Class<? extends State>>(
+                    clientItems);
+            newClientItems.remove(cvItemName);
+            if (newClientItems.isEmpty()) {
+                items.remove(ohItemName);
+                removeStateChangeListener(ohItemName);
+            } else {
+                items.put(ohItemName, Collections.unmodifiableMap(newClientItems));
+            }
+        }
+        try {
+            subscription.eventOutput.close();
+        } catch (IOException e) {
+            logger.debug("closing event output failed: {}", e.getMessage());
+        }
+        logger.debug("client unsubscribed, {} clients connected", subscriptions.size());
+    }
+
+    private void addStateChangeListener(String ohItemName) {
+        if (this.itemRegistry == null) {
+            return;
+        }
+        Item item = this.itemRegistry.get(ohItemName);
+        if (item instanceof GenericItem) {
+            ((GenericItem) item).addStateChangeListener(stateEventListener);
+        }
+    }
+
+    private void removeStateChangeListener(String ohItemName) {
+        if (this.itemRegistry == null) {
+            return;
+        }
+        Item item = this.itemRegistry.get(ohItemName);
+        if (item instanceof GenericItem) {
+            ((GenericItem) item).removeStateChangeListener(stateEventListener);
+        }
+    }
+
+    /**
+     * Writes an event to a client, the client is unsubscribed if it is not connected anymore
+     */
+    private void send(Subscription subscription, OutboundEvent event) {
+        if (subscription.eventOutput.isClosed()) {
+            unsubscribe(subscription);
+            return;
+        }
+        try {
+            subscription.eventOutput.write(event);
+            countEvent();
+        } catch (IOException e) {
+            logger.debug("writing to client failed, unsubscribing: {}", e.getMessage());
+            unsubscribe(subscription);
+        }
+    }
+
+    private void countEvent() {
+        long now = System.currentTimeMillis();
+        if (now - rateIntervalStart >= 1000) {
+            eventsPerSecond = rateIntervalStart == 0 ? rateIntervalEvents
+                    : rateIntervalEvents * 1000 / (now - rateIntervalStart);
+            rateIntervalStart = now;
+            rateIntervalEvents = 0;
+        }
+        rateIntervalEvents++;
+    }
+
+    /**
+     * Returns the number of currently connected clients
+     */
+    public int getConnectedClients() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns the number of events written to the clients per second, measured over the last second with events
+     */
+    public long getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
     /**
      * listen for state changes from the requested items
      */
     @Override
     public void registerItems() {
-        for (Item item : items.keySet()) {
-            if (item instanceof GenericItem) {
-                ((GenericItem) item).addStateChangeListener(stateEventListener);
-            }
+        for (String ohItemName : items.keySet()) {
+            addStateChangeListener(ohItemName);
         }
     }
 
@@ -189,7 +357,7 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void registerItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName())) {
+        if (item == null || !items.containsKey(item.getName())) {
             return;
         }
         if (item instanceof GenericItem) {
@@ -206,18 +374,17 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void unregisterItem(Item item) {
-        if (item == null || items.containsKey(item) || !itemNames.contains(item.getName())) {
+        if (item == null) {
             return;
         }
         if (item instanceof GenericItem) {
             ((GenericItem) item).removeStateChangeListener(stateEventListener);
-            items.remove(item);
         }
     }
 
     /**
      * Broadcasts an event described by the given parameters to all currently
-     * listening clients.
+     * listening clients, that have subscribed to the item of the event.
      *
      * @param item
      *            - the item which has changed
@@ -226,17 +393,49 @@ public class ReadResource implements EventBroadcaster, RESTResource {
      */
     @Override
     public void broadcastEvent(final Object eventObject) {
+        final Set<Subscription> clients;
+        if (eventObject instanceof StateBean) {
+            clients = subscribers.get(((StateBean) eventObject).name);
+            if (clients == null || clients.isEmpty()) {
+                return;
+            }
+        } else {
+            clients = subscriptions;
+        }
         executorService.execute(new Runnable() {
 
             @Override
             public void run() {
-                broadcaster.broadcast(SseUtil.buildEvent(eventObject));
+                // serialize once for all clients
+                OutboundEvent event = SseUtil.buildEvent(eventObject);
+                for (Subscription subscription : clients) {
+                    send(subscription, event);
+                }
             }
         });
     }
 
     @Override
     public Map<String, Class<? extends State>> getClientItems(Item item) {
-        return items.get(item);
+        return items.get(item.getName());
+    }
+
+    /**
+     * The items requested by one client connection
+     */
+    private static class Subscription {
+        private final EventOutput eventOutput;
+        // CometVisu item name -> openHAB item name
+        private final Map<String, String> itemNames = new HashMap<String, String>();
+        private final Map<String, Class<? extends State>> stateClasses = new HashMap<String, Class<? extends State>>();
+
+        private Subscription(EventOutput eventOutput) {
+            this.eventOutput = eventOutput;
+        }
+
+        private void add(String cvItemName, String ohItemName, Class<? extends State> stateClass) {
+            itemNames.put(cvItemName, ohItemName);
+            stateClasses.put(cvItemName, stateClass);
+        }
     }
 }
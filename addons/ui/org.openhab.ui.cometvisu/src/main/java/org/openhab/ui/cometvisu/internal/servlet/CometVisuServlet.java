@@ -96,6 +96,8 @@ public class CometVisuServlet extends HttpServlet {
     private static final long DEFAULT_EXPIRE_TIME = 604800000L; // ..ms = 1
                                                                 // week.
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
+    private static final long CACHE_SIZE = 32 * 1024 * 1024; // ..bytes = 32MB.
+    private static final long CACHE_FILE_SIZE = 2 * 1024 * 1024; // ..bytes = 2MB.
 
     private Pattern sitemapPattern = Pattern.compile(".*/visu_config_?(oh_)?([^\\.]+)?\\.xml");
     private Pattern configStorePattern = Pattern.compile("config/visu_config_oh_([a-z0-9_]+)\\.xml");
@@ -117,6 +119,8 @@ public class CometVisuServlet extends HttpServlet {
 
     private CometVisuApp cometVisuApp;
 
+    private final transient StaticFileCache fileCache = new StaticFileCache(CACHE_SIZE, CACHE_FILE_SIZE);
+
     public CometVisuServlet(String filesystemDir, CometVisuApp cometVisuApp) {
         root = filesystemDir;
         rootFolder = new File(root);
@@ -179,6 +183,27 @@ public class CometVisuServlet extends HttpServlet {
         }
     }
 
+    @Override
+    public void destroy() {
+        logger.debug("static file cache: {} hits, {} misses", fileCache.getHits(), fileCache.getMisses());
+        fileCache.dispose();
+        super.destroy();
+    }
+
+    /**
+     * Returns how many static files have been served from the in-memory cache
+     */
+    public long getCacheHits() {
+        return fileCache.getHits();
+    }
+
+    /**
+     * Returns how many static files have been requested, that were not in the in-memory cache
+     */
+    public long getCacheMisses() {
+        return fileCache.getMisses();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -541,12 +566,18 @@ public class CometVisuServlet extends HttpServlet {
             // file object.
             file = new File(rootFolder, URLDecoder.decode(requestedFile, "UTF-8"));
         }
-        if (file.equals(rootFolder) || (file.exists() && file.isDirectory())) {
+        if (file.equals(rootFolder)) {
+            file = new File(file, "index.html");
+        }
+
+        // Files in the cache are served without accessing the filesystem.
+        StaticFileCache.Entry cached = fileCache.get(file);
+        if (cached == null && file.exists() && file.isDirectory()) {
             file = new File(file, "index.html");
         }
 
         // Check if file actually exists in filesystem.
-        if (!file.exists()) {
+        if (cached == null && !file.exists()) {
             // show installation hints if the CometVisu-Clients main index.html is requested but cannot be found
             if (file.getParentFile().equals(rootFolder)
                     && (file.getName().equalsIgnoreCase("index.html") || file.getName().length() == 0)) {
@@ -572,8 +603,21 @@ public class CometVisuServlet extends HttpServlet {
 
         // Prepare some variables. The ETag is an unique identifier of the file.
         String fileName = file.getName();
-        long length = file.length();
-        long lastModified = file.lastModified();
+        String contentType = getServletContext().getMimeType(fileName);
+
+        // If content type is unknown, then set the default value.
+        // For all content types, see:
+        // http://www.w3schools.com/media/media_mimeref.asp
+        // To add new content types, add new mime-mapping entry in web.xml.
+        if (contentType == null) {
+            contentType = "application/octet-stream";
+        }
+        boolean compressible = isCompressible(contentType);
+        if (cached == null) {
+            cached = fileCache.load(file, compressible);
+        }
+        long length = cached != null ? cached.content.length : file.length();
+        long lastModified = cached != null ? cached.lastModified : file.lastModified();
         String eTag = fileName + "_" + length + "_" + lastModified;
         long expires = System.currentTimeMillis() + DEFAULT_EXPIRE_TIME;
 
@@ -697,27 +741,22 @@ public class CometVisuServlet extends HttpServlet {
         // Prepare and initialize response
         // --------------------------------------------------------
 
-        // Get content type by file name and set default GZIP support and
-        // content disposition.
-        String contentType = getServletContext().getMimeType(fileName);
+        // Set default GZIP support and content disposition.
         boolean acceptsGzip = false;
         String disposition = "inline";
 
-        // If content type is unknown, then set the default value.
-        // For all content types, see:
-        // http://www.w3schools.com/media/media_mimeref.asp
-        // To add new content types, add new mime-mapping entry in web.xml.
-        if (contentType == null) {
-            contentType = "application/octet-stream";
+        // If content type is compressible, then determine whether GZIP content
+        // encoding is supported by the browser. A cached file is only sent
+        // compressed, if its cached GZIP variant is smaller.
+        if (compressible && (cached == null || cached.gzipContent != null)) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
+            response.setHeader("Vary", "Accept-Encoding");
         }
 
-        // If content type is text, then determine whether GZIP content encoding
-        // is supported by
-        // the browser and expand content type with the one and right character
-        // encoding.
+        // If content type is text, then expand content type with the one and
+        // right character encoding.
         if (contentType.startsWith("text")) {
-            String acceptEncoding = request.getHeader("Accept-Encoding");
-            acceptsGzip = acceptEncoding != null && accepts(acceptEncoding, "gzip");
             contentType += ";charset=UTF-8";
         }
 
@@ -745,8 +784,10 @@ public class CometVisuServlet extends HttpServlet {
         OutputStream output = null;
 
         try {
-            // Open streams.
-            input = new RandomAccessFile(file, "r");
+            // Open streams, cached files are copied from memory.
+            if (cached == null) {
+                input = new RandomAccessFile(file, "r");
+            }
             output = response.getOutputStream();
 
             if (ranges.isEmpty() || ranges.get(0) == full) {
@@ -757,7 +798,14 @@ public class CometVisuServlet extends HttpServlet {
                 response.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
 
                 if (content) {
-                    if (acceptsGzip) {
+                    if (acceptsGzip && cached != null) {
+                        // The browser accepts GZIP, so send the cached GZIP
+                        // variant, its length is known.
+                        response.setHeader("Content-Encoding", "gzip");
+                        response.setHeader("Content-Length", String.valueOf(cached.gzipContent.length));
+                        output.write(cached.gzipContent);
+                        return;
+                    } else if (acceptsGzip) {
                         // The browser accepts GZIP, so GZIP the content.
                         response.setHeader("Content-Encoding", "gzip");
                         output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
@@ -770,7 +818,7 @@ public class CometVisuServlet extends HttpServlet {
                     }
 
                     // Copy full range.
-                    copy(input, output, r.start, r.length);
+                    copy(cached, input, output, r.start, r.length);
                 }
 
             } else if (ranges.size() == 1) {
@@ -784,7 +832,7 @@ public class CometVisuServlet extends HttpServlet {
 
                 if (content) {
                     // Copy single part range.
-                    copy(input, output, r.start, r.length);
+                    copy(cached, input, output, r.start, r.length);
                 }
 
             } else {
@@ -808,7 +856,7 @@ public class CometVisuServlet extends HttpServlet {
                         sos.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
 
                         // Copy single part range of multi part range.
-                        copy(input, output, r.start, r.length);
+                        copy(cached, input, output, r.start, r.length);
                     }
 
                     // End with multipart boundary.
@@ -1157,6 +1205,45 @@ public class CometVisuServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Copy the given byte range of the given cached file or, if the file is not
+     * cached, of the given input to the given output.
+     *
+     * @param cached
+     *            The cached file or null.
+     * @param input
+     *            The input to copy the given range from, if the file is not
+     *            cached.
+     * @param output
+     *            The output to copy the given range to.
+     * @param start
+     *            Start of the byte range.
+     * @param length
+     *            Length of the byte range.
+     * @throws IOException
+     *             If something fails at I/O level.
+     */
+    private static void copy(StaticFileCache.Entry cached, RandomAccessFile input, OutputStream output, long start,
+            long length) throws IOException {
+        if (cached != null) {
+            output.write(cached.content, (int) start, (int) length);
+        } else {
+            copy(input, output, start, length);
+        }
+    }
+
+    /**
+     * Returns true if the given content type is worth to be sent GZIP
+     * compressed.
+     *
+     * @param contentType
+     *            The content type of the file.
+     */
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text") || contentType.equals("application/javascript")
+                || contentType.equals("application/json") || contentType.endsWith("xml");
+    }
+
     /**
      * Close the given resource.
      *
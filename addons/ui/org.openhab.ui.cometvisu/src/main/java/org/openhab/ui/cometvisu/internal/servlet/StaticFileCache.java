@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2010-2017 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.cometvisu.internal.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory cache of static client files. Cached files are served without accessing the file system. The cache is
+ * bounded by the total size of the cached files, the least recently used files are removed first.
+ *
+ * A gzip compressed variant is stored for compressible files. A file watcher on the folders of the cached files
+ * removes files from the cache as soon as they are changed.
+ *
+ * @author Tobias Bräutigam
+ * @since 2.2.0
+ */
+class StaticFileCache {
+    private final Logger logger = LoggerFactory.getLogger(StaticFileCache.class);
+
+    private final long maxSize;
+    private final long maxFileSize;
+    private long size;
+    // incremented for every file change reported by the watcher
+    private long generation;
+
+    private final Map<Path, Entry> entries = new LinkedHashMap<Path, Entry>(64, 0.75f, true);
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<WatchKey, Path>();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A cached file
+     */
+    static class Entry {
+        final byte[] content;
+        final byte[] gzipContent;
+        final long lastModified;
+
+        Entry(byte[] content, byte[] gzipContent, long lastModified) {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.lastModified = lastModified;
+        }
+
+        long size() {
+            return content.length + (gzipContent != null ? gzipContent.length : 0);
+        }
+    }
+
+    /**
+     * @param maxSize
+     *            - maximum number of bytes of all cached files including their gzip variants
+     * @param maxFileSize
+     *            - maximum size of a file to be cached
+     */
+    StaticFileCache(long maxSize, long maxFileSize) {
+        this.maxSize = maxSize;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Returns the cached file or null, if the file is not cached
+     */
+    synchronized Entry get(File file) {
+        Entry entry = entries.get(file.toPath().toAbsolutePath());
+        if (entry != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Reads a file into the cache.
+     *
+     * @param file
+     *            - the file to cache
+     * @param compress
+     *            - store a gzip compressed variant of the file
+     * @return the cached file or null, if the file can't be cached or has been changed while reading it
+     */
+    Entry load(File file, boolean compress) {
+        long length = file.length();
+        if (length > maxFileSize || length > maxSize) {
+            return null;
+        }
+        Path path = file.toPath().toAbsolutePath();
+        try {
+            watch(path.getParent());
+            long startGeneration;
+            synchronized (this) {
+                startGeneration = generation;
+            }
+            long lastModified = file.lastModified();
+            byte[] content = Files.readAllBytes(path);
+            byte[] gzipContent = null;
+            if (compress) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 3 + 64);
+                GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                gzip.write(content);
+                gzip.close();
+                // only keep it, if it is smaller
+                if (bytes.size() < content.length) {
+                    gzipContent = bytes.toByteArray();
+                }
+            }
+            Entry entry = new Entry(content, gzipContent, lastModified);
+            synchronized (this) {
+                // a change event may have been processed before the entry was put, or may not be reported
+                // yet, so don't keep content that might be outdated
+                if (generation != startGeneration || file.lastModified() != lastModified
+                        || file.length() != content.length) {
+                    logger.debug("file '{}' has been changed while caching it", file);
+                    return null;
+                }
+                Entry previous = entries.put(path, entry);
+                if (previous != null) {
+                    size -= previous.size();
+                }
+                size += entry.size();
+                Iterator<Entry> it = entries.values().iterator();
+                while (size > maxSize && it.hasNext()) {
+                    size -= it.next().size();
+                    it.remove();
+                }
+            }
+            return entry;
+        } catch (IOException e) {
+            logger.debug("file '{}' can't be cached: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns how many requested files have been served from the cache
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns how many requested files have not been in the cache
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all files from the cache and stops watching the folders
+     */
+    synchronized void dispose() {
+        entries.clear();
+        size = 0;
+        watchedFolders.clear();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("closing file watcher failed: {}", e.getMessage());
+            }
+            watchService = null;
+            watchThread = null;
+        }
+    }
+
+    private synchronized void watch(Path folder) throws IOException {
+        if (watchedFolders.containsValue(folder)) {
+            return;
+        }
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            final WatchService service = watchService;
+            watchThread = new Thread("CometVisu static file watcher") {
+                @Override
+                public void run() {
+                    processEvents(service);
+                }
+            };
+            watchThread.setDaemon(true);
+            watchThread.start();
+        }
+        WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedFolders.put(key, folder);
+    }
+
+    private void processEvents(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                synchronized (this) {
+                    Path folder = watchedFolders.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        generation++;
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || folder == null) {
+                            entries.clear();
+                            size = 0;
+                        } else {
+                            Entry entry = entries.remove(folder.resolve((Path) event.context()));
+                            if (entry != null) {
+                                size -= entry.size();
+                                logger.debug("removed changed file '{}' from cache, {} hits, {} misses",
+                                        event.context(), hits.get(), misses.get());
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        watchedFolders.remove(key);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // cache disposed
+        }
+    }
+}